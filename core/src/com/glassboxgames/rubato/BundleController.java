@@ -0,0 +1,155 @@
+package com.glassboxgames.rubato;
+
+import com.badlogic.gdx.assets.*;
+import com.badlogic.gdx.graphics.*;
+import com.badlogic.gdx.utils.*;
+import com.glassboxgames.rubato.serialize.*;
+
+/**
+ * Singleton controller for the asset bundles in the bundle manifest. Textures
+ * not listed in any bundle form the core bundle, which is loaded at startup.
+ * The other bundles are queued on demand, and loading a bundle unloads the
+ * other bundles in its group.
+ */
+public class BundleController {
+  /** The asset manager loading the bundles */
+  private AssetManager manager;
+  /** Texture shortnames that belong to a bundle */
+  private ObjectSet<String> bundled;
+  /** Names of the bundles currently queued or loaded */
+  private ObjectSet<String> requested;
+  /** Scratch array of bundles to unload */
+  private Array<String> evicted;
+
+  /** The singleton instance of the controller */
+  private static BundleController controller = null;
+
+  /**
+   * Returns the singleton instance of the controller.
+   */
+  public static BundleController getInstance() {
+    if (controller == null) {
+      controller = new BundleController();
+    }
+    return controller;
+  }
+
+  /**
+   * Creates a new bundle controller. Only used to create the singleton.
+   */
+  private BundleController() {
+    bundled = new ObjectSet<String>();
+    for (BundleData bundle : Shared.BUNDLES.values()) {
+      bundled.addAll(bundle.textures);
+    }
+    requested = new ObjectSet<String>();
+    evicted = new Array<String>();
+  }
+
+  /**
+   * Sets the asset manager used to load the bundles.
+   */
+  public void setManager(AssetManager manager) {
+    this.manager = manager;
+  }
+
+  /**
+   * Returns whether the texture with the given shortname belongs to the core bundle.
+   */
+  public boolean isCore(String key) {
+    return !bundled.contains(key);
+  }
+
+  /**
+   * Queues the core textures in the texture pipeline.
+   */
+  public void preloadCore() {
+    for (String key : Shared.TEXTURE_PATHS.keys()) {
+      if (isCore(key)) {
+        TexturePipeline.getInstance().load(Shared.TEXTURE_PATHS.get(key));
+      }
+    }
+  }
+
+  /**
+   * Registers the loaded core textures under their shortnames.
+   */
+  public void loadCore() {
+    for (String key : Shared.TEXTURE_PATHS.keys()) {
+      if (isCore(key)) {
+        register(key);
+      }
+    }
+  }
+
+  /**
+   * Queues the given bundle in the asset manager, unloading the other bundles
+   * in its group. Does nothing if there is no bundle with that name.
+   * @param name name of the bundle
+   */
+  public void load(String name) {
+    BundleData bundle = Shared.BUNDLES.get(name);
+    if (bundle == null || requested.contains(name) || manager == null) {
+      return;
+    }
+    evicted.clear();
+    for (String other : requested) {
+      if (Shared.BUNDLES.get(other).group.equals(bundle.group)) {
+        evicted.add(other);
+      }
+    }
+    for (String other : evicted) {
+      unload(other);
+    }
+    requested.add(name);
+    for (String key : bundle.textures) {
+      manager.load(Shared.TEXTURE_PATHS.get(key), Texture.class);
+    }
+  }
+
+  /**
+   * Loads the given bundle, blocking until all of its assets are ready, and
+   * registers its textures under their shortnames.
+   * @param name name of the bundle
+   */
+  public void finishLoading(String name) {
+    load(name);
+    BundleData bundle = Shared.BUNDLES.get(name);
+    if (bundle == null || manager == null) {
+      return;
+    }
+    for (String key : bundle.textures) {
+      manager.finishLoadingAsset(Shared.TEXTURE_PATHS.get(key));
+      register(key);
+    }
+  }
+
+  /**
+   * Unloads the given bundle and removes its textures from the texture map.
+   * @param name name of the bundle
+   */
+  public void unload(String name) {
+    if (!requested.remove(name)) {
+      return;
+    }
+    for (String key : Shared.BUNDLES.get(name).textures) {
+      Shared.TEXTURE_MAP.remove(key);
+      String path = Shared.TEXTURE_PATHS.get(key);
+      if (manager.contains(path)) {
+        manager.unload(path);
+      }
+    }
+  }
+
+  /**
+   * Registers the loaded texture with the given shortname, if not already registered.
+   */
+  private void register(String key) {
+    if (Shared.TEXTURE_MAP.containsKey(key)) {
+      return;
+    }
+    Texture texture = manager.get(Shared.TEXTURE_PATHS.get(key), Texture.class);
+    texture.setFilter(Texture.TextureFilter.Linear, Texture.TextureFilter.Linear);
+    Shared.TEXTURE_MAP.put(key, texture);
+  }
+}
@@ -4,8 +4,131 @@ import com.badlogic.gdx.audio.Sound;
 import com.badlogic.gdx.physics.box2d.*;
 import com.badlogic.gdx.utils.*;
 import com.glassboxgames.rubato.entity.*;
+import com.glassboxgames.rubato.entity.Entity.Collider;
 
 public class CollisionController implements ContactListener {
+  /** Player hitbox touches an enemy hurtbox */
+  private static final int PLAYER_ATTACK = 1;
+  /** Player hitbox touches an enemy hitbox (projectiles can be hit) */
+  private static final int PLAYER_ATTACK_HITBOX = 2;
+  /** Player hurtbox touches an enemy hitbox */
+  private static final int PLAYER_HIT_BY_ENEMY = 3;
+  /** Player ground sensor touches an enemy hurtbox */
+  private static final int PLAYER_ON_ENEMY = 4;
+  /** Player hurtbox touches an enemy vision sensor */
+  private static final int ENEMY_SEES_PLAYER = 5;
+  /** Player ground sensor touches a platform hurtbox */
+  private static final int PLAYER_ON_PLATFORM = 6;
+  /** Player hurtbox touches a platform hitbox (spikes) */
+  private static final int PLAYER_HIT_BY_PLATFORM = 7;
+  /** Enemy hitbox touches another enemy's hurtbox */
+  private static final int ENEMY_HIT_ENEMY = 8;
+  /** Enemy hitbox touches a platform hurtbox */
+  private static final int ENEMY_HIT_PLATFORM = 9;
+  /** Enemy hurtbox touches a platform hurtbox */
+  private static final int ENEMY_TOUCH_PLATFORM = 10;
+  /** Spider ground sensor touches an enemy or platform hurtbox */
+  private static final int SPIDER_GROUND = 11;
+  /** Spider front edge sensor touches an enemy or platform hurtbox */
+  private static final int SPIDER_FRONT_EDGE = 12;
+  /** Spider back edge sensor touches an enemy or platform hurtbox */
+  private static final int SPIDER_BACK_EDGE = 13;
+  /** Spider ahead sensor touches an enemy or platform hurtbox */
+  private static final int SPIDER_AHEAD = 14;
+  /** Spider behind sensor touches an enemy or platform hurtbox */
+  private static final int SPIDER_BEHIND = 15;
+  /** Player hurtbox touches a checkpoint center sensor */
+  private static final int PLAYER_AT_CHECKPOINT = 16;
+  /** Player hurtbox touches an altar center sensor */
+  private static final int PLAYER_AT_ALTAR = 17;
+  /** Player hurtbox touches an altar vision sensor */
+  private static final int ALTAR_SEES_PLAYER = 18;
+  /** Player hurtbox touches a tooltip center sensor */
+  private static final int PLAYER_AT_TOOLTIP = 19;
+  /** Initial capacity of the contact event queue */
+  private static final int INITIAL_EVENT_CAPACITY = 256;
+
+  /**
+   * Handlers for starting contacts, indexed by the slots of both colliders.
+   * Each entry is the handler shifted left by one, with the low bit set if
+   * the colliders must be swapped into the handler's order.
+   */
+  private static final int[] beginHandlers = new int[Collider.SLOT_COUNT * Collider.SLOT_COUNT];
+  /** Handlers for ending contacts, in the same format as the starting handlers */
+  private static final int[] endHandlers = new int[Collider.SLOT_COUNT * Collider.SLOT_COUNT];
+
+  static {
+    register(beginHandlers, Entity.KIND_PLAYER, Collider.Type.HITBOX,
+             Entity.KIND_ENEMY, Collider.Type.HURTBOX, PLAYER_ATTACK);
+    register(beginHandlers, Entity.KIND_PLAYER, Collider.Type.HITBOX,
+             Entity.KIND_ENEMY, Collider.Type.HITBOX, PLAYER_ATTACK_HITBOX);
+    register(beginHandlers, Entity.KIND_PLAYER, Collider.Type.HURTBOX,
+             Entity.KIND_ENEMY, Collider.Type.HITBOX, PLAYER_HIT_BY_ENEMY);
+    register(beginHandlers, Entity.KIND_PLAYER, Collider.Type.GROUND,
+             Entity.KIND_ENEMY, Collider.Type.HURTBOX, PLAYER_ON_ENEMY);
+    register(beginHandlers, Entity.KIND_PLAYER, Collider.Type.HURTBOX,
+             Entity.KIND_ENEMY, Collider.Type.VISION, ENEMY_SEES_PLAYER);
+    register(beginHandlers, Entity.KIND_PLAYER, Collider.Type.GROUND,
+             Entity.KIND_PLATFORM, Collider.Type.HURTBOX, PLAYER_ON_PLATFORM);
+    register(beginHandlers, Entity.KIND_PLAYER, Collider.Type.HURTBOX,
+             Entity.KIND_PLATFORM, Collider.Type.HITBOX, PLAYER_HIT_BY_PLATFORM);
+    register(beginHandlers, Entity.KIND_ENEMY, Collider.Type.HITBOX,
+             Entity.KIND_ENEMY, Collider.Type.HURTBOX, ENEMY_HIT_ENEMY);
+    register(beginHandlers, Entity.KIND_ENEMY, Collider.Type.HITBOX,
+             Entity.KIND_PLATFORM, Collider.Type.HURTBOX, ENEMY_HIT_PLATFORM);
+    register(beginHandlers, Entity.KIND_ENEMY, Collider.Type.HURTBOX,
+             Entity.KIND_PLATFORM, Collider.Type.HURTBOX, ENEMY_TOUCH_PLATFORM);
+    registerSpiderSensors(beginHandlers, Entity.KIND_ENEMY);
+    registerSpiderSensors(beginHandlers, Entity.KIND_PLATFORM);
+    register(beginHandlers, Entity.KIND_PLAYER, Collider.Type.HURTBOX,
+             Entity.KIND_CHECKPOINT, Collider.Type.CENTER, PLAYER_AT_CHECKPOINT);
+    register(beginHandlers, Entity.KIND_PLAYER, Collider.Type.HURTBOX,
+             Entity.KIND_ALTAR, Collider.Type.CENTER, PLAYER_AT_ALTAR);
+    register(beginHandlers, Entity.KIND_PLAYER, Collider.Type.HURTBOX,
+             Entity.KIND_ALTAR, Collider.Type.VISION, ALTAR_SEES_PLAYER);
+    register(beginHandlers, Entity.KIND_PLAYER, Collider.Type.HURTBOX,
+             Entity.KIND_TOOLTIP, Collider.Type.CENTER, PLAYER_AT_TOOLTIP);
+
+    register(endHandlers, Entity.KIND_PLAYER, Collider.Type.GROUND,
+             Entity.KIND_ENEMY, Collider.Type.HURTBOX, PLAYER_ON_ENEMY);
+    register(endHandlers, Entity.KIND_PLAYER, Collider.Type.HURTBOX,
+             Entity.KIND_ENEMY, Collider.Type.VISION, ENEMY_SEES_PLAYER);
+    register(endHandlers, Entity.KIND_PLAYER, Collider.Type.GROUND,
+             Entity.KIND_PLATFORM, Collider.Type.HURTBOX, PLAYER_ON_PLATFORM);
+    registerSpiderSensors(endHandlers, Entity.KIND_ENEMY);
+    registerSpiderSensors(endHandlers, Entity.KIND_PLATFORM);
+    register(endHandlers, Entity.KIND_PLAYER, Collider.Type.HURTBOX,
+             Entity.KIND_TOOLTIP, Collider.Type.CENTER, PLAYER_AT_TOOLTIP);
+  }
+
+  /**
+   * Registers a handler for contacts between the two given colliders, in either order.
+   * The handler always receives the first collider first.
+   */
+  private static void register(int[] handlers, int kind1, Collider.Type type1,
+                               int kind2, Collider.Type type2, int handler) {
+    int slot1 = Collider.getSlot(kind1, type1);
+    int slot2 = Collider.getSlot(kind2, type2);
+    handlers[slot1 * Collider.SLOT_COUNT + slot2] = handler << 1;
+    handlers[slot2 * Collider.SLOT_COUNT + slot1] = handler << 1 | 1;
+  }
+
+  /**
+   * Registers the spider terrain sensor handlers against hurtboxes of the given kind.
+   */
+  private static void registerSpiderSensors(int[] handlers, int kind) {
+    register(handlers, Entity.KIND_ENEMY, Collider.Type.GROUND,
+             kind, Collider.Type.HURTBOX, SPIDER_GROUND);
+    register(handlers, Entity.KIND_ENEMY, Collider.Type.FRONT_EDGE,
+             kind, Collider.Type.HURTBOX, SPIDER_FRONT_EDGE);
+    register(handlers, Entity.KIND_ENEMY, Collider.Type.BACK_EDGE,
+             kind, Collider.Type.HURTBOX, SPIDER_BACK_EDGE);
+    register(handlers, Entity.KIND_ENEMY, Collider.Type.AHEAD,
+             kind, Collider.Type.HURTBOX, SPIDER_AHEAD);
+    register(handlers, Entity.KIND_ENEMY, Collider.Type.BEHIND,
+             kind, Collider.Type.HURTBOX, SPIDER_BEHIND);
+  }
+
   /** The singleton instance of the collision controller */
   private static CollisionController controller = null;
 
@@ -19,89 +142,118 @@ public class CollisionController implements ContactListener {
     return controller;
   }
 
+  /** Queued event handlers, with the sign bit set for ending contacts */
+  private int[] eventHandlers;
+  /** First entity of each queued event, in handler order */
+  private Entity[] eventFirsts;
+  /** Second entity of each queued event, in handler order */
+  private Entity[] eventSeconds;
+  /** Number of queued events */
+  private int eventCount;
+
   /**
    * Create a new collision controller. Only used to create the singleton.
    */
-  private CollisionController() {}
+  private CollisionController() {
+    eventHandlers = new int[INITIAL_EVENT_CAPACITY];
+    eventFirsts = new Entity[INITIAL_EVENT_CAPACITY];
+    eventSeconds = new Entity[INITIAL_EVENT_CAPACITY];
+  }
 
-  @Override
-  public void beginContact(Contact contact) {
-    Fixture f1 = contact.getFixtureA();
-    Fixture f2 = contact.getFixtureB();
-    Object d1 = f1.getUserData();
-    Object d2 = f2.getUserData();
+  /**
+   * Looks up the handler for the given contact and queues it as an event.
+   * Events are applied later by processEvents(), so Box2D callbacks never
+   * change game state directly.
+   * @param contact the contact that started or ended
+   * @param handlers the handler table to look up
+   * @param end whether the contact ended
+   */
+  private void queue(Contact contact, int[] handlers, boolean end) {
+    Object d1 = contact.getFixtureA().getUserData();
+    Object d2 = contact.getFixtureB().getUserData();
     if (d1 != null && d2 != null) {
-      Entity.Collider o1 = (Entity.Collider)d1;
-      Entity.Collider o2 = (Entity.Collider)d2;
-      if (o1.entity instanceof Player && o2.entity instanceof Enemy) {
-        startCollision((Player)o1.entity, o1, (Enemy)o2.entity, o2);
-      } else if (o2.entity instanceof Player && o1.entity instanceof Enemy) {
-        startCollision((Player)o2.entity, o2, (Enemy)o1.entity, o1);
-      } else if (o1.entity instanceof Player && o2.entity instanceof Platform) {
-        startCollision((Player)o1.entity, o1, (Platform)o2.entity, o2);
-      } else if (o2.entity instanceof Player && o1.entity instanceof Platform) {
-        startCollision((Player)o2.entity, o2, (Platform)o1.entity, o1);
-      } else if (o1.entity instanceof Enemy && o2.entity instanceof Enemy) {
-        startCollision((Enemy)o1.entity, o1, (Enemy) o2.entity, o2);
-        startCollision((Enemy)o2.entity, o2, (Enemy) o1.entity, o1);
-      } else if (o1.entity instanceof Enemy && o2.entity instanceof Platform) {
-        startCollision((Enemy)o1.entity, o1, (Platform)o2.entity, o2);
-      } else if (o2.entity instanceof Enemy && o1.entity instanceof Platform) {
-        startCollision((Enemy)o2.entity, o2, (Platform)o1.entity, o1);
-      } else if (o1.entity instanceof Player && o2.entity instanceof Checkpoint) {
-        startCollision((Player)o1.entity, o1, (Checkpoint)o2.entity, o2);
-      } else if (o2.entity instanceof Player && o1.entity instanceof Checkpoint) {
-        startCollision((Player)o2.entity, o2, (Checkpoint)o1.entity, o1);
-      } else if (o1.entity instanceof Player && o2.entity instanceof Altar) {
-        startCollision((Player)o1.entity, o1, (Altar)o2.entity, o2);
-      } else if (o2.entity instanceof Player && o1.entity instanceof Altar) {
-        startCollision((Player)o2.entity, o2, (Altar)o1.entity, o1);
-      } else if (o1.entity instanceof Player && o2.entity instanceof Tooltip) {
-        startCollision((Player)o1.entity, o1, (Tooltip)o2.entity, o2);
-      } else if (o2.entity instanceof Player && o1.entity instanceof Tooltip) {
-        startCollision((Player) o2.entity, o2, (Tooltip) o1.entity, o1);
+      Collider o1 = (Collider)d1;
+      Collider o2 = (Collider)d2;
+      int entry = handlers[o1.slot * Collider.SLOT_COUNT + o2.slot];
+      if (entry != 0) {
+        if ((entry & 1) == 0) {
+          queue(entry >> 1, o1.entity, o2.entity, end);
+        } else {
+          queue(entry >> 1, o2.entity, o1.entity, end);
+        }
       }
     }
   }
-  
-  @Override
-  public void endContact(Contact contact) {
-    Fixture f1 = contact.getFixtureA();
-    Fixture f2 = contact.getFixtureB();
-    Object d1 = f1.getUserData();
-    Object d2 = f2.getUserData();
-    if (d1 != null && d2 != null) {
-      Entity.Collider o1 = (Entity.Collider)d1;
-      Entity.Collider o2 = (Entity.Collider)d2;
-      if (o1.entity instanceof Player && o2.entity instanceof Enemy) {
-        endCollision((Player)o1.entity, o1, (Enemy)o2.entity, o2);
-      } else if (o2.entity instanceof Player && o1.entity instanceof Enemy) {
-        endCollision((Player)o2.entity, o2, (Enemy)o1.entity, o1);
-      } else if (o1.entity instanceof Player && o2.entity instanceof Platform) {
-        endCollision((Player)o1.entity, o1, (Platform)o2.entity, o2);
-      } else if (o2.entity instanceof Player && o1.entity instanceof Platform) {
-        endCollision((Player)o2.entity, o2, (Platform)o1.entity, o1);
-      } else if (o1.entity instanceof Enemy && o2.entity instanceof Enemy) {
-        endCollision((Enemy)o1.entity, o1, (Enemy) o2.entity, o2);
-        endCollision((Enemy)o2.entity, o2, (Enemy) o1.entity, o1);
-      } else if (o1.entity instanceof Enemy && o2.entity instanceof Platform) {
-        endCollision((Enemy)o1.entity, o1, (Platform) o2.entity, o2);
-      } else if (o2.entity instanceof Enemy && o1.entity instanceof Platform) {
-        endCollision((Enemy)o2.entity, o2, (Platform) o1.entity, o1);
-      } else if (o1.entity instanceof Player && o2.entity instanceof Checkpoint) {
-        endCollision((Player)o1.entity, o1, (Checkpoint)o2.entity, o2);
-      } else if (o2.entity instanceof Player && o1.entity instanceof Checkpoint) {
-        endCollision((Player)o2.entity, o2, (Checkpoint)o1.entity, o1);
-      } else if (o1.entity instanceof Player && o2.entity instanceof Altar) {
-        endCollision((Player)o1.entity, o1, (Altar)o2.entity, o2);
-      } else if (o2.entity instanceof Player && o1.entity instanceof Altar) {
-        endCollision((Player)o2.entity, o2, (Altar)o1.entity, o1);
-      } else if (o1.entity instanceof Player && o2.entity instanceof Tooltip) {
-        endCollision((Player)o1.entity, o1, (Tooltip)o2.entity, o2);
-      } else if (o2.entity instanceof Player && o1.entity instanceof Tooltip) {
-        endCollision((Player)o2.entity, o2, (Tooltip)o1.entity, o1);
+
+  /**
+   * Queues an event for the given handler and entities.
+   * The event is dropped if the latest queued event for the same handler and
+   * entities is identical, e.g. when several fixtures of one enemy touch the
+   * player's hitbox in the same step.
+   */
+  private void queue(int handler, Entity e1, Entity e2, boolean end) {
+    for (int i = eventCount - 1; i >= 0; i--) {
+      if ((eventHandlers[i] & Integer.MAX_VALUE) == handler
+          && eventFirsts[i] == e1 && eventSeconds[i] == e2) {
+        if (eventHandlers[i] < 0 == end) {
+          return;
+        }
+        break;
+      }
+    }
+    if (eventCount == eventHandlers.length) {
+      int capacity = eventCount * 2;
+      int[] handlers = new int[capacity];
+      Entity[] firsts = new Entity[capacity];
+      Entity[] seconds = new Entity[capacity];
+      System.arraycopy(eventHandlers, 0, handlers, 0, eventCount);
+      System.arraycopy(eventFirsts, 0, firsts, 0, eventCount);
+      System.arraycopy(eventSeconds, 0, seconds, 0, eventCount);
+      eventHandlers = handlers;
+      eventFirsts = firsts;
+      eventSeconds = seconds;
+    }
+    eventHandlers[eventCount] = end ? handler | Integer.MIN_VALUE : handler;
+    eventFirsts[eventCount] = e1;
+    eventSeconds[eventCount] = e2;
+    eventCount++;
+  }
+
+  /**
+   * Applies all queued contact events in the order Box2D reported them, then
+   * clears the queue. Call after each world step.
+   */
+  public void processEvents() {
+    for (int i = 0; i < eventCount; i++) {
+      int handler = eventHandlers[i];
+      if (handler < 0) {
+        endCollision(handler & Integer.MAX_VALUE, eventFirsts[i], eventSeconds[i]);
+      } else {
+        startCollision(handler, eventFirsts[i], eventSeconds[i]);
       }
     }
+    clearEvents();
+  }
+
+  /**
+   * Discards all queued contact events, e.g. when the level is replaced.
+   */
+  public void clearEvents() {
+    for (int i = 0; i < eventCount; i++) {
+      eventFirsts[i] = null;
+      eventSeconds[i] = null;
+    }
+    eventCount = 0;
+  }
+
+  @Override
+  public void beginContact(Contact contact) {
+    queue(contact, beginHandlers, false);
+  }
+
+  @Override
+  public void endContact(Contact contact) {
+    queue(contact, endHandlers, true);
   }
 
   @Override
@@ -124,248 +276,147 @@ public class CollisionController implements ContactListener {
       }
     }
   }
-  
-  /**
-   * Handles a collision starting between a player and an enemy.
-   */
-  private void startCollision(Player player, Entity.Collider playerCollider,
-                              Enemy enemy, Entity.Collider enemyCollider) {
-
-    if (playerCollider.isHitbox() && enemyCollider.isHurtbox()) {
-      attack(player, enemy);
-    } else if (playerCollider.isHitbox() && enemyCollider.isHitbox()) {
-      if (enemy instanceof Projectile) {
-        attack(player, enemy);
-      }
-    } else if (playerCollider.isHurtbox() && enemyCollider.isHitbox()) {
-      if (!player.isInvincible() && !enemy.isSuspended()) {
-        player.setAlive(false);
-      }
-    } else if (playerCollider.isGroundSensor() && enemyCollider.isHurtbox()) {
-      if (enemy.isSuspended()) {
-        player.addUnderfoot(enemy);
-      }
-    } else if (playerCollider.isHurtbox() && enemyCollider.isVisionSensor()) {
-      if (!enemy.isSuspended()) {
-        enemy.setTarget(player.getPosition());
-      }
-    }
-  }
 
   /**
-   * Handles a collision ending between a player and an enemy.
+   * Handles a collision starting between two entities.
+   * @param handler the handler registered for the pair of colliders
+   * @param e1 the entity of the handler's first collider
+   * @param e2 the entity of the handler's second collider
    */
-  private void endCollision(Player player, Entity.Collider playerCollider,
-                            Enemy enemy, Entity.Collider enemyCollider) {
-    if (playerCollider.isGroundSensor() && enemyCollider.isHurtbox()) {
-      player.removeUnderfoot(enemy);
-    } else if (playerCollider.isHurtbox() && enemyCollider.isVisionSensor()) {
-      if (!enemy.isSuspended()) {
-        enemy.setTarget(null);
-      }
-    }
-  }
-
-  /**
-   * Handles a collision starting between a player and a platform.
-   */
-  private void startCollision(Player player, Entity.Collider playerCollider,
-                              Platform platform, Entity.Collider platformCollider) {
-    if (playerCollider.isGroundSensor() && platformCollider.isHurtbox()) {
-      player.addUnderfoot(platform);
-      platform.visit();
-    } else if (playerCollider.isHurtbox() && platformCollider.isHitbox()) {
-      player.setAlive(false);
-    }
-  }
-
-  /**
-   * Handles a collision ending between a player and a platform.
-   */
-  private void endCollision(Player player, Entity.Collider playerCollider,
-                            Platform platform, Entity.Collider platformCollider) {
-    if (playerCollider.isGroundSensor() && platformCollider.isHurtbox()) {
-      player.removeUnderfoot(platform);
-    }
-  }
-  
-  /**
-   * Handles a collision starting between two enemies.
-   */
-  private void startCollision(Enemy e1, Entity.Collider collider1,
-                              Enemy e2, Entity.Collider collider2) {
-    if (collider1.isHitbox() && collider2.isHurtbox()) {
-      if (e1 instanceof Projectile && e2.isSuspended()) {
-        e1.setRemove(true);
-      }
-    } else if (collider1.isGroundSensor() && collider2.isHurtbox()) {
+  private void startCollision(int handler, Entity e1, Entity e2) {
+    switch (handler) {
+    case PLAYER_ATTACK:
+      attack((Player)e1, (Enemy)e2);
+      break;
+    case PLAYER_ATTACK_HITBOX:
+      if (e2 instanceof Projectile) {
+        attack((Player)e1, (Enemy)e2);
+      }
+      break;
+    case PLAYER_HIT_BY_ENEMY:
+      if (!((Player)e1).isInvincible() && !((Enemy)e2).isSuspended()) {
+        ((Player)e1).setAlive(false);
+      }
+      break;
+    case PLAYER_ON_ENEMY:
+      if (((Enemy)e2).isSuspended()) {
+        ((Player)e1).addUnderfoot(e2);
+      }
+      break;
+    case ENEMY_SEES_PLAYER:
+      if (!((Enemy)e2).isSuspended()) {
+        ((Enemy)e2).setTarget(e1);
+      }
+      break;
+    case PLAYER_ON_PLATFORM:
+      ((Player)e1).addUnderfoot(e2);
+      ((Platform)e2).visit();
+      break;
+    case PLAYER_HIT_BY_PLATFORM:
+      ((Player)e1).setAlive(false);
+      break;
+    case ENEMY_HIT_ENEMY:
+      if (e1 instanceof Projectile && ((Enemy)e2).isSuspended()) {
+        ((Enemy)e1).setRemove(true);
+      }
+      break;
+    case ENEMY_HIT_PLATFORM:
+      if (e1 instanceof Projectile) {
+        ((Enemy)e1).setRemove(true);
+      }
+      break;
+    case ENEMY_TOUCH_PLATFORM:
+      if (e1 instanceof Wyrm) {
+        ((Wyrm)e1).cancelAttack();
+      }
+      break;
+    case SPIDER_GROUND:
       if (e1 instanceof Spider) {
         ((Spider)e1).addUnderfoot(e2);
       }
-    } else if (collider1.isFrontEdgeSensor() && collider2.isHurtbox()) {
+      break;
+    case SPIDER_FRONT_EDGE:
       if (e1 instanceof Spider) {
         ((Spider)e1).addAtFrontEdge(e2);
       }
-    } else if (collider1.isBackEdgeSensor() && collider2.isHurtbox()) {
+      break;
+    case SPIDER_BACK_EDGE:
       if (e1 instanceof Spider) {
         ((Spider)e1).addAtBackEdge(e2);
       }
-    } else if (collider1.isAheadSensor() && collider2.isHurtbox()) {
+      break;
+    case SPIDER_AHEAD:
       if (e1 instanceof Spider) {
         ((Spider)e1).addAhead(e2);
       }
-    } else if (collider1.isBehindSensor() && collider2.isHurtbox()) {
+      break;
+    case SPIDER_BEHIND:
       if (e1 instanceof Spider) {
         ((Spider)e1).addBehind(e2);
       }
-    }    
+      break;
+    case PLAYER_AT_CHECKPOINT:
+      if (!((Checkpoint)e2).isActivated()) {
+        ((Checkpoint)e2).activate();
+      }
+      break;
+    case PLAYER_AT_ALTAR:
+      ((Altar)e2).setPlayerClose(true);
+      break;
+    case ALTAR_SEES_PLAYER:
+      ((Altar)e2).setPlayerSeen(true);
+      break;
+    case PLAYER_AT_TOOLTIP:
+      ((Tooltip)e2).appear();
+      break;
+    }
   }
 
   /**
-   * Handles a collision ending between two enemies.
+   * Handles a collision ending between two entities.
+   * @param handler the handler registered for the pair of colliders
+   * @param e1 the entity of the handler's first collider
+   * @param e2 the entity of the handler's second collider
    */
-  private void endCollision(Enemy e1, Entity.Collider collider1,
-                            Enemy e2, Entity.Collider collider2) {
-    if (collider1.isGroundSensor() && collider2.isHurtbox()) {
+  private void endCollision(int handler, Entity e1, Entity e2) {
+    switch (handler) {
+    case PLAYER_ON_ENEMY:
+    case PLAYER_ON_PLATFORM:
+      ((Player)e1).removeUnderfoot(e2);
+      break;
+    case ENEMY_SEES_PLAYER:
+      if (!((Enemy)e2).isSuspended()) {
+        ((Enemy)e2).setTarget(null);
+      }
+      break;
+    case SPIDER_GROUND:
       if (e1 instanceof Spider) {
         ((Spider)e1).removeUnderfoot(e2);
       }
-    } else if (collider1.isFrontEdgeSensor() && collider2.isHurtbox()) {
+      break;
+    case SPIDER_FRONT_EDGE:
       if (e1 instanceof Spider) {
         ((Spider)e1).removeAtFrontEdge(e2);
       }
-    } else if (collider1.isBackEdgeSensor() && collider2.isHurtbox()) {
+      break;
+    case SPIDER_BACK_EDGE:
       if (e1 instanceof Spider) {
         ((Spider)e1).removeAtBackEdge(e2);
       }
-    } else if (collider1.isAheadSensor() && collider2.isHurtbox()) {
+      break;
+    case SPIDER_AHEAD:
       if (e1 instanceof Spider) {
         ((Spider)e1).removeAhead(e2);
       }
-    } else if (collider1.isBehindSensor() && collider2.isHurtbox()) {
+      break;
+    case SPIDER_BEHIND:
       if (e1 instanceof Spider) {
         ((Spider)e1).removeBehind(e2);
       }
-    }    
-  }
-
-  /**
-   * Handles a collision starting between an enemy and a platform.
-   */
-  private void startCollision(Enemy enemy, Entity.Collider enemyCollider,
-                              Platform platform, Entity.Collider platformCollider) {
-    if (enemyCollider.isGroundSensor() && platformCollider.isHurtbox()) {
-      if (enemy instanceof Spider) {
-        ((Spider)enemy).addUnderfoot(platform);
-      }
-    } else if (enemyCollider.isFrontEdgeSensor() && platformCollider.isHurtbox()) {
-      if (enemy instanceof Spider) {
-        ((Spider)enemy).addAtFrontEdge(platform);
-      }
-    } else if (enemyCollider.isBackEdgeSensor() && platformCollider.isHurtbox()) {
-      if (enemy instanceof Spider) {
-        ((Spider)enemy).addAtBackEdge(platform);
-      }
-    } else if (enemyCollider.isAheadSensor() && platformCollider.isHurtbox()) {
-      if (enemy instanceof Spider) {
-        ((Spider)enemy).addAhead(platform);
-      }
-    } else if (enemyCollider.isBehindSensor() && platformCollider.isHurtbox()) {
-      if (enemy instanceof Spider) {
-        ((Spider)enemy).addBehind(platform);
-      }
-    } else if (enemyCollider.isHurtbox() && platformCollider.isHurtbox()) {
-      if (enemy instanceof Wyrm) {
-        ((Wyrm)enemy).cancelAttack();
-      }
-    } else if (enemyCollider.isHitbox() && platformCollider.isHurtbox()) {
-      if (enemy instanceof Projectile) {
-        enemy.setRemove(true);
-      }
-    }
-  }
-
-  /**
-   * Handles a collision ending between an enemy and a platform.
-   */
-  private void endCollision(Enemy enemy, Entity.Collider enemyCollider,
-                            Platform platform, Entity.Collider platformCollider) {
-    if (enemyCollider.isGroundSensor() && platformCollider.isHurtbox()) {
-      if (enemy instanceof Spider) {
-        ((Spider)enemy).removeUnderfoot(platform);
-      }
-    } else if (enemyCollider.isFrontEdgeSensor() && platformCollider.isHurtbox()) {
-      if (enemy instanceof Spider) {
-        ((Spider)enemy).removeAtFrontEdge(platform);
-      }
-    } else if (enemyCollider.isBackEdgeSensor() && platformCollider.isHurtbox()) {
-      if (enemy instanceof Spider) {
-        ((Spider)enemy).removeAtBackEdge(platform);
-      }
-    } else if (enemyCollider.isAheadSensor() && platformCollider.isHurtbox()) {
-      if (enemy instanceof Spider) {
-        ((Spider)enemy).removeAhead(platform);
-      }
-    } else if (enemyCollider.isBehindSensor() && platformCollider.isHurtbox()) {
-      if (enemy instanceof Spider) {
-        ((Spider)enemy).removeBehind(platform);
-      }
-    }
-  }
-  
-  /**
-   * Handles a collision starting between a player and a checkpoint.
-   */
-  private void startCollision(Player player, Entity.Collider playerCollider,
-                              Checkpoint checkpoint, Entity.Collider checkpointCollider) {
-    if (playerCollider.isHurtbox() && checkpointCollider.isCenterSensor()) {
-      if (!checkpoint.isActivated()) {
-        checkpoint.activate();
-      }
-    }
-  }
-
-  /**
-   * Handles a collision ending between a player and a checkpoint.
-   */
-  private void endCollision(Player player, Entity.Collider playerCollider,
-                            Checkpoint checkpoint, Entity.Collider checkpointCollider) {}
-  
-  /**
-   * Handles a collision starting between a player and a altar.
-   */
-  private void startCollision(Player player, Entity.Collider playerCollider,
-                              Altar altar, Entity.Collider altarCollider) {
-    if (playerCollider.isHurtbox() && altarCollider.isCenterSensor()) {
-      altar.setPlayerClose(true);
-    } else if (playerCollider.isHurtbox() && altarCollider.isVisionSensor()) {
-      altar.setPlayerSeen(true);
-    }
-  }
-  
-  /**
-   * Handles a collision starting between a player and a tooltip.
-   */
-  private void startCollision(Player player, Entity.Collider playerCollider,
-                              Tooltip tooltip, Entity.Collider tooltipCollider) {
-    if (playerCollider.isHurtbox() && tooltipCollider.isCenterSensor()) {
-      tooltip.appear();
-    }
-  }
-
-  /**
-   * Handles a collision ending between a player and a altar.
-   */
-  private void endCollision(Player player, Entity.Collider playerCollider,
-                            Altar altar, Entity.Collider altarCollider) {}
-
-  /**
-   * Handles a collision ending between a player and a tooltip.
-   */
-  private void endCollision(Player player, Entity.Collider playerCollider,
-                            Tooltip tooltip, Entity.Collider tooltipCollider) {
-    if (playerCollider.isHurtbox() && tooltipCollider.isCenterSensor()) {
-      tooltip.disappear();
+      break;
+    case PLAYER_AT_TOOLTIP:
+      ((Tooltip)e2).disappear();
+      break;
     }
   }
 }
@@ -2,6 +2,7 @@ package com.glassboxgames.rubato;
 
 import com.badlogic.gdx.*;
 import com.badlogic.gdx.assets.*;
+import com.badlogic.gdx.files.*;
 import com.badlogic.gdx.graphics.*;
 import com.badlogic.gdx.graphics.g2d.*;
 import com.badlogic.gdx.graphics.g2d.freetype.*;
@@ -11,10 +12,13 @@ import com.badlogic.gdx.scenes.scene2d.*;
 import com.badlogic.gdx.scenes.scene2d.ui.*;
 import com.badlogic.gdx.scenes.scene2d.utils.*;
 import com.badlogic.gdx.utils.*;
+import com.glassboxgames.rubato.serialize.*;
 import com.glassboxgames.util.*;
 
 /**
- * Mode controller for cutscenes.
+ * Mode controller for cutscenes. Cutscenes are sliced into horizontal strips
+ * at build time, and only the strips within and just ahead of the viewport
+ * are kept resident while scrolling.
  */
 public class CutsceneMode implements Screen {
   /** Exit code for escaping the cutscene mode */
@@ -24,6 +28,16 @@ public class CutsceneMode implements Screen {
 
   /** Fraction of screen width to use */
   private static final float SCALE = 0.6f;
+  /** Directory of the unsliced cutscene images */
+  private static final String CUTSCENE_DIR = "Cutscenes/";
+  /** Directory of the cutscene strips, sliced at build time by the sliceCutscenes task */
+  private static final String STRIP_DIR = "Cutscenes/Strips/";
+  /** Name of the strip index file in each cutscene directory */
+  private static final String STRIP_INDEX = "strips.json";
+  /** Number of strips kept resident below the viewport, in the scrolling direction */
+  private static final int STRIPS_AHEAD = 2;
+  /** Number of strips kept resident above the viewport */
+  private static final int STRIPS_BEHIND = 1;
 
   /** Whether this mode is active */
   private boolean active;
@@ -43,14 +57,24 @@ public class CutsceneMode implements Screen {
   /** Current pause time */
   private int startPauseTime, endPauseTime;
   
-  /** Cutscene texture */
-  private Texture cutscene;
-  /** Next cutscene texture */
-  private Texture nextCutscene;
+  /** Strip index of the current cutscene */
+  private CutsceneData cutscene;
+  /** Name of the next cutscene */
+  private String nextCutsceneKey;
+  /** Paths of the strips of the current cutscene, from the top */
+  private Array<String> stripPaths;
+  /** Uploaded strips of the current cutscene, null where not resident */
+  private Array<Texture> strips;
+  /** Which strips have been requested from the texture pipeline */
+  private Bits requested;
+  /** Indices of the first and last strips within the viewport */
+  private int firstVisible, lastVisible;
   /** Cutscene width */
   private float width;
   /** Cutscene height */
   private float height;
+  /** Ratio of drawn size to cutscene pixels */
+  private float scale;
   /** Scroll rate */
   private int scrollRate;
 
@@ -64,13 +88,17 @@ public class CutsceneMode implements Screen {
 
     cutscene = null;
     cameraPos = new Vector2();
+    stripPaths = new Array<String>();
+    strips = new Array<Texture>();
+    requested = new Bits();
   }
 
   /**
-   * Sets the next cutscene texture for this instance.
+   * Sets the next cutscene for this instance. Its strips are loaded when the
+   * cutscene is shown, since the current cutscene may still be fading out.
    */
   public void setNextCutscene(String key, int pauseTime, int rate) {
-    nextCutscene = Shared.getTexture(key);
+    nextCutsceneKey = key;
     startPauseTime = endPauseTime = pauseTime;
     scrollRate = rate;
   }
@@ -120,6 +148,47 @@ public class CutsceneMode implements Screen {
         listener.exitScreen(this, EXIT_COMPLETE);
       }
     }
+    streamStrips();
+  }
+
+  /**
+   * Requests the strips within and near the viewport from the texture
+   * pipeline and releases the others. Strips ahead of the viewport are decoded
+   * on worker threads; strips within it are waited on if not yet uploaded.
+   */
+  private void streamStrips() {
+    float halfHeight = Gdx.graphics.getHeight() / 2f;
+    float top = (height - cameraPos.y - halfHeight) / scale;
+    float bottom = (height - cameraPos.y + halfHeight) / scale;
+    firstVisible = MathUtils.clamp((int)(top / cutscene.stripHeight), 0, cutscene.strips - 1);
+    lastVisible = MathUtils.clamp((int)(bottom / cutscene.stripHeight), 0, cutscene.strips - 1);
+
+    TexturePipeline pipeline = TexturePipeline.getInstance();
+    for (int i = 0; i < cutscene.strips; i++) {
+      boolean wanted = i >= firstVisible - STRIPS_BEHIND && i <= lastVisible + STRIPS_AHEAD;
+      if (wanted && !requested.get(i)) {
+        requested.set(i);
+        pipeline.load(stripPaths.get(i));
+      } else if (!wanted && requested.get(i)) {
+        requested.clear(i);
+        strips.set(i, null);
+        pipeline.unload(stripPaths.get(i));
+      }
+    }
+    for (int i = firstVisible - STRIPS_BEHIND; i <= lastVisible + STRIPS_AHEAD; i++) {
+      if (i < 0 || i >= cutscene.strips || strips.get(i) != null) {
+        continue;
+      }
+      if (i >= firstVisible && i <= lastVisible) {
+        pipeline.finishLoading(stripPaths.get(i));
+      }
+      Texture strip = pipeline.get(stripPaths.get(i));
+      if (strip != null) {
+        strip.setFilter(Texture.TextureFilter.Linear, Texture.TextureFilter.Linear);
+        strip.setWrap(Texture.TextureWrap.ClampToEdge, Texture.TextureWrap.ClampToEdge);
+        strips.set(i, strip);
+      }
+    }
   }
 
   /**
@@ -129,7 +198,13 @@ public class CutsceneMode implements Screen {
     canvas.clear();
     canvas.moveCamera(cameraPos);
     canvas.begin();
-    canvas.drawBackground(cutscene, Color.WHITE, width, height);
+    for (int i = firstVisible; i <= lastVisible; i++) {
+      Texture strip = strips.get(i);
+      if (strip != null) {
+        float y = height - (i * cutscene.stripHeight + strip.getHeight()) * scale;
+        canvas.drawBackground(strip, Color.WHITE, 0, y, width, strip.getHeight() * scale);
+      }
+    }
     canvas.end();
   }
 
@@ -152,17 +227,64 @@ public class CutsceneMode implements Screen {
 
   @Override
   public void show() {
-    cutscene = nextCutscene;
+    String dir = STRIP_DIR + nextCutsceneKey + "/";
+    FileHandle index = Gdx.files.internal(dir + STRIP_INDEX);
+    if (index.exists()) {
+      cutscene = Shared.JSON.fromJson(CutsceneData.class, index);
+      for (int i = 0; i < cutscene.strips; i++) {
+        stripPaths.add(dir + i + ".png");
+        strips.add(null);
+      }
+    } else {
+      loadUnsliced(nextCutsceneKey);
+    }
     width = Gdx.graphics.getWidth() * SCALE;
-    height = cutscene.getHeight() * Gdx.graphics.getWidth() / cutscene.getWidth() * SCALE;
+    scale = width / cutscene.width;
+    height = cutscene.height * scale;
     cameraPos.set(width / 2, height - Gdx.graphics.getHeight() / 2);
+    streamStrips();
     active = true;
   }
 
+  /**
+   * Loads the unsliced image of the given cutscene as its only strip, for
+   * trees where the sliceCutscenes task has not been run. Blocks until the
+   * whole image is uploaded.
+   */
+  private void loadUnsliced(String key) {
+    String path = CUTSCENE_DIR + key + ".png";
+    if (!Gdx.files.internal(path).exists()) {
+      throw new RuntimeException("Cutscene " + key + " not found; run gradle core:sliceCutscenes");
+    }
+    Gdx.app.log("CutsceneMode", "No strips for " + key + "; loading " + path
+                + " whole (run gradle core:sliceCutscenes)");
+    TexturePipeline pipeline = TexturePipeline.getInstance();
+    pipeline.load(path);
+    pipeline.finishLoading(path);
+    Texture texture = pipeline.get(path);
+    cutscene = new CutsceneData();
+    cutscene.width = texture.getWidth();
+    cutscene.height = texture.getHeight();
+    cutscene.stripHeight = texture.getHeight();
+    cutscene.strips = 1;
+    stripPaths.add(path);
+    strips.add(null);
+    requested.set(0);
+  }
+
   @Override
   public void hide() {
     exiting = false;
     active = false;
+    for (int i = 0; i < stripPaths.size; i++) {
+      if (requested.get(i)) {
+        TexturePipeline.getInstance().unload(stripPaths.get(i));
+      }
+    }
+    requested.clear();
+    stripPaths.clear();
+    strips.clear();
+    cutscene = null;
   }
 
   @Override
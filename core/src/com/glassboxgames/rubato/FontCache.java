@@ -0,0 +1,366 @@
+package com.glassboxgames.rubato;
+
+import java.io.*;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.security.*;
+import com.badlogic.gdx.*;
+import com.badlogic.gdx.files.*;
+import com.badlogic.gdx.graphics.*;
+import com.badlogic.gdx.graphics.g2d.*;
+import com.badlogic.gdx.graphics.g2d.BitmapFont.BitmapFontData;
+import com.badlogic.gdx.graphics.g2d.BitmapFont.Glyph;
+import com.badlogic.gdx.graphics.g2d.freetype.*;
+import com.badlogic.gdx.utils.*;
+
+/**
+ * Singleton cache of the rasterized fonts in the font map. On a cold start the
+ * fonts are generated with FreeType into shared glyph pages, which are written
+ * to external storage together with the glyph data. Later launches read the
+ * pages back instead, as long as the font files and parameters are unchanged.
+ * Font keys with identical parameters share their glyphs.
+ */
+public class FontCache {
+  /** Directory containing the cached fonts, relative to external storage */
+  public static final String CACHE_DIR = Shared.EXTERNAL_PATH + "FontCache/";
+  /** Name of the glyph data file in a cache directory */
+  private static final String DATA_FILE = "fonts.bin";
+  /** Name prefix of the page images in a cache directory */
+  private static final String PAGE_PREFIX = "page";
+  /** Extension of the page images */
+  private static final String PAGE_EXT = ".png";
+  /** Magic number at the start of the glyph data file ("RBFT") */
+  private static final int MAGIC = 0x52424654;
+  /** Version of the cache format and generator settings, bumped on every change */
+  private static final int VERSION = 1;
+  /** Width and height of the glyph pages */
+  private static final int PAGE_SIZE = 1024;
+
+  /** Textures of the glyph pages shared by every font */
+  private Array<Texture> pages;
+
+  /** The singleton instance of the cache */
+  private static FontCache cache = null;
+
+  /**
+   * Returns the singleton instance of the cache.
+   */
+  public static FontCache getInstance() {
+    if (cache == null) {
+      cache = new FontCache();
+    }
+    return cache;
+  }
+
+  /**
+   * Creates a new font cache. Only used to create the singleton.
+   */
+  private FontCache() {
+    pages = new Array<Texture>();
+  }
+
+  /**
+   * Loads every font in the font metadata into the font map, reading them from
+   * the cache if possible and generating and caching them otherwise.
+   */
+  public void load() {
+    Array<Array<Float>> params = new Array<Array<Float>>();
+    for (Array<Float> metadata : Shared.FONT_METADATA.values()) {
+      if (!params.contains(metadata, false)) {
+        params.add(metadata);
+      }
+    }
+    FileHandle dir = Gdx.files.external(CACHE_DIR + computeHash(params) + "/");
+    Array<BitmapFontData> fontData = null;
+    if (dir.child(DATA_FILE).exists()) {
+      try {
+        fontData = read(dir, params.size);
+      } catch (RuntimeException e) {
+        Gdx.app.error("FontCache", "Failed to read " + dir.path() + ", regenerating fonts", e);
+        disposePages();
+      }
+    }
+    if (fontData == null) {
+      fontData = generate(params, dir);
+    }
+
+    Array<TextureRegion> regions = new Array<TextureRegion>();
+    for (Texture page : pages) {
+      regions.add(new TextureRegion(page));
+    }
+    for (String key : Shared.FONT_METADATA.keys()) {
+      BitmapFontData data = fontData.get(params.indexOf(Shared.FONT_METADATA.get(key), false));
+      Shared.FONT_MAP.put(key, new BitmapFont(data, regions, true));
+    }
+  }
+
+  /**
+   * Returns a hex digest of the cache version, the page size, and the font
+   * file contents and parameters of the given fonts.
+   * @param params distinct [weight, size, spacing] arrays
+   */
+  private static String computeHash(Array<Array<Float>> params) {
+    MessageDigest digest;
+    try {
+      digest = MessageDigest.getInstance("SHA-1");
+    } catch (NoSuchAlgorithmException e) {
+      throw new RuntimeException("SHA-1 is not available", e);
+    }
+    ByteBuffer buffer = ByteBuffer.allocate(12);
+    buffer.putInt(VERSION).putInt(PAGE_SIZE).putInt(params.size);
+    digest.update(buffer.array());
+    for (Array<Float> metadata : params) {
+      digest.update(Gdx.files.internal(Shared.FONT_FILES.get(metadata.get(0).intValue())).readBytes());
+      buffer.clear();
+      buffer.putInt(metadata.get(0).intValue()).putInt(metadata.get(1).intValue()).putInt(metadata.get(2).intValue());
+      digest.update(buffer.array());
+    }
+    return new BigInteger(1, digest.digest()).toString(16);
+  }
+
+  /**
+   * Generates the given fonts into shared glyph pages, creating the page
+   * textures, and writes them to the given cache directory.
+   * @param params distinct [weight, size, spacing] arrays
+   * @param dir cache directory to write to
+   * @return the glyph data of each font, in order
+   */
+  private Array<BitmapFontData> generate(Array<Array<Float>> params, FileHandle dir) {
+    PixmapPacker packer = new PixmapPacker(PAGE_SIZE, PAGE_SIZE, Pixmap.Format.RGBA8888, 1, false,
+                                           new PixmapPacker.SkylineStrategy());
+    packer.setTransparentColor(Color.WHITE);
+    packer.getTransparentColor().a = 0;
+    IntMap<FreeTypeFontGenerator> generators = new IntMap<FreeTypeFontGenerator>();
+    Array<BitmapFontData> fontData = new Array<BitmapFontData>();
+    for (Array<Float> metadata : params) {
+      int weight = metadata.get(0).intValue();
+      if (!generators.containsKey(weight)) {
+        generators.put(weight, new FreeTypeFontGenerator(Gdx.files.internal(Shared.FONT_FILES.get(weight))));
+      }
+      FreeTypeFontGenerator.FreeTypeFontParameter parameter =
+        Shared.createFontParams(metadata.get(1).intValue(), metadata.get(2).intValue());
+      parameter.packer = packer;
+      fontData.add(generators.get(weight).generateData(parameter));
+    }
+    for (FreeTypeFontGenerator generator : generators.values()) {
+      generator.dispose();
+    }
+    for (PixmapPacker.Page page : packer.getPages()) {
+      pages.add(new Texture(page.getPixmap()));
+    }
+
+    try {
+      if (dir.parent().exists()) {
+        dir.parent().deleteDirectory();
+      }
+      for (int i = 0; i < packer.getPages().size; i++) {
+        PixmapIO.writePNG(dir.child(PAGE_PREFIX + i + PAGE_EXT), packer.getPages().get(i).getPixmap());
+      }
+      write(dir.child(DATA_FILE), fontData);
+    } catch (RuntimeException e) {
+      Gdx.app.error("FontCache", "Failed to write " + dir.path(), e);
+    }
+    packer.dispose();
+    return fontData;
+  }
+
+  /**
+   * Writes the page count and the glyph data of the given fonts.
+   * @param file the data file to write
+   * @param fontData glyph data of each font, in order
+   */
+  private void write(FileHandle file, Array<BitmapFontData> fontData) {
+    DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file.write(false)));
+    try {
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      out.writeShort(pages.size);
+      out.writeShort(fontData.size);
+      for (BitmapFontData data : fontData) {
+        writeFontData(out, data);
+      }
+    } catch (IOException e) {
+      throw new RuntimeException("Could not write " + file.path(), e);
+    } finally {
+      StreamUtils.closeQuietly(out);
+    }
+  }
+
+  /**
+   * Writes the metrics and glyphs of one font in the layout read by readFontData.
+   */
+  private static void writeFontData(DataOutputStream out, BitmapFontData data) throws IOException {
+    out.writeBoolean(data.flipped);
+    out.writeBoolean(data.markupEnabled);
+    float[] metrics = {data.padTop, data.padRight, data.padBottom, data.padLeft,
+                       data.lineHeight, data.capHeight, data.ascent, data.descent, data.down,
+                       data.blankLineScale, data.scaleX, data.scaleY, data.cursorX,
+                       data.spaceXadvance, data.xHeight};
+    for (float metric : metrics) {
+      out.writeFloat(metric);
+    }
+    writeChars(out, data.breakChars);
+    writeChars(out, data.xChars);
+    writeChars(out, data.capChars);
+
+    Array<Glyph> glyphs = new Array<Glyph>();
+    for (Glyph[] page : data.glyphs) {
+      for (int i = 0; page != null && i < page.length; i++) {
+        if (page[i] != null) {
+          glyphs.add(page[i]);
+        }
+      }
+    }
+    out.writeInt(data.missingGlyph == null ? -1 : data.missingGlyph.id);
+    out.writeShort(glyphs.size);
+    for (Glyph glyph : glyphs) {
+      out.writeInt(glyph.id);
+      out.writeShort(glyph.srcX);
+      out.writeShort(glyph.srcY);
+      out.writeShort(glyph.width);
+      out.writeShort(glyph.height);
+      out.writeShort(glyph.xoffset);
+      out.writeShort(glyph.yoffset);
+      out.writeShort(glyph.xadvance);
+      out.writeByte(glyph.page);
+      out.writeBoolean(glyph.fixedWidth);
+      int count = 0;
+      for (int i = 0; glyph.kerning != null && i < glyph.kerning.length; i++) {
+        for (int j = 0; glyph.kerning[i] != null && j < glyph.kerning[i].length; j++) {
+          if (glyph.kerning[i][j] != 0) {
+            count++;
+          }
+        }
+      }
+      out.writeShort(count);
+      for (int i = 0; glyph.kerning != null && i < glyph.kerning.length; i++) {
+        for (int j = 0; glyph.kerning[i] != null && j < glyph.kerning[i].length; j++) {
+          if (glyph.kerning[i][j] != 0) {
+            out.writeChar(i * glyph.kerning[i].length + j);
+            out.writeByte(glyph.kerning[i][j]);
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Writes a possibly null char array as a length-prefixed sequence, with -1 for null.
+   */
+  private static void writeChars(DataOutputStream out, char[] chars) throws IOException {
+    out.writeShort(chars == null ? -1 : chars.length);
+    for (int i = 0; chars != null && i < chars.length; i++) {
+      out.writeChar(chars[i]);
+    }
+  }
+
+  /**
+   * Reads the page textures and glyph data from the given cache directory.
+   * @param dir cache directory to read from
+   * @param count expected number of fonts
+   * @return the glyph data of each font, in order
+   */
+  private Array<BitmapFontData> read(FileHandle dir, int count) {
+    ByteBuffer buffer = ByteBuffer.wrap(dir.child(DATA_FILE).readBytes());
+    if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+      throw new RuntimeException("Unsupported font cache format");
+    }
+    int pageCount = buffer.getShort();
+    if (buffer.getShort() != count) {
+      throw new RuntimeException("Font cache does not match the font metadata");
+    }
+    Array<BitmapFontData> fontData = new Array<BitmapFontData>();
+    for (int i = 0; i < count; i++) {
+      fontData.add(readFontData(buffer));
+    }
+    for (int i = 0; i < pageCount; i++) {
+      pages.add(new Texture(dir.child(PAGE_PREFIX + i + PAGE_EXT)));
+    }
+    return fontData;
+  }
+
+  /**
+   * Reads the metrics and glyphs of one font written by writeFontData.
+   */
+  private static BitmapFontData readFontData(ByteBuffer buffer) {
+    BitmapFontData data = new BitmapFontData();
+    data.flipped = buffer.get() != 0;
+    data.markupEnabled = buffer.get() != 0;
+    data.padTop = buffer.getFloat();
+    data.padRight = buffer.getFloat();
+    data.padBottom = buffer.getFloat();
+    data.padLeft = buffer.getFloat();
+    data.lineHeight = buffer.getFloat();
+    data.capHeight = buffer.getFloat();
+    data.ascent = buffer.getFloat();
+    data.descent = buffer.getFloat();
+    data.down = buffer.getFloat();
+    data.blankLineScale = buffer.getFloat();
+    data.scaleX = buffer.getFloat();
+    data.scaleY = buffer.getFloat();
+    data.cursorX = buffer.getFloat();
+    data.spaceXadvance = buffer.getFloat();
+    data.xHeight = buffer.getFloat();
+    data.breakChars = readChars(buffer);
+    data.xChars = readChars(buffer);
+    data.capChars = readChars(buffer);
+
+    int missing = buffer.getInt();
+    int glyphCount = buffer.getShort();
+    for (int i = 0; i < glyphCount; i++) {
+      Glyph glyph = new Glyph();
+      glyph.id = buffer.getInt();
+      glyph.srcX = buffer.getShort();
+      glyph.srcY = buffer.getShort();
+      glyph.width = buffer.getShort();
+      glyph.height = buffer.getShort();
+      glyph.xoffset = buffer.getShort();
+      glyph.yoffset = buffer.getShort();
+      glyph.xadvance = buffer.getShort();
+      glyph.page = buffer.get();
+      glyph.fixedWidth = buffer.get() != 0;
+      int kerningCount = buffer.getShort();
+      for (int j = 0; j < kerningCount; j++) {
+        glyph.setKerning(buffer.getChar(), buffer.get());
+      }
+      data.setGlyph(glyph.id, glyph);
+      if (glyph.id == missing) {
+        data.missingGlyph = glyph;
+      }
+    }
+    return data;
+  }
+
+  /**
+   * Reads a char array written by writeChars.
+   */
+  private static char[] readChars(ByteBuffer buffer) {
+    int length = buffer.getShort();
+    if (length < 0) {
+      return null;
+    }
+    char[] chars = new char[length];
+    for (int i = 0; i < length; i++) {
+      chars[i] = buffer.getChar();
+    }
+    return chars;
+  }
+
+  /**
+   * Disposes the page textures.
+   */
+  private void disposePages() {
+    for (Texture page : pages) {
+      page.dispose();
+    }
+    pages.clear();
+  }
+
+  /**
+   * Disposes the page textures and removes the fonts from the font map.
+   */
+  public void dispose() {
+    Shared.FONT_MAP.clear();
+    disposePages();
+  }
+}
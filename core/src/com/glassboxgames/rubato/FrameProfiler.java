@@ -0,0 +1,195 @@
+package com.glassboxgames.rubato;
+
+import java.util.Arrays;
+import com.badlogic.gdx.files.*;
+
+/**
+ * Profiler timing the phases of each frame. The per-frame time of each phase
+ * is kept in a ring buffer of the most recent frames, from which the rolling
+ * min/avg/p99 are computed. Does nothing while disabled.
+ */
+public class FrameProfiler {
+  /** Reading the player input */
+  public static final int INPUT = 0;
+  /** Updating the player */
+  public static final int PLAYER = 1;
+  /** Updating the enemies */
+  public static final int ENEMIES = 2;
+  /** Updating the platforms */
+  public static final int PLATFORMS = 3;
+  /** Syncing the entity colliders */
+  public static final int SYNC = 4;
+  /** Stepping the physics world */
+  public static final int STEP = 5;
+  /** Drawing the background */
+  public static final int BACKGROUND = 6;
+  /** Drawing the entities */
+  public static final int ENTITIES = 7;
+  /** Drawing the UI stages */
+  public static final int STAGE = 8;
+  /** Number of phases */
+  public static final int PHASE_COUNT = 9;
+  /** Names of the phases, used in the HUD and CSV header */
+  public static final String[] PHASE_NAMES = {
+    "input", "player", "enemies", "platforms", "sync", "step", "background", "entities", "stage",
+  };
+  /** Number of frames kept in the ring buffers */
+  public static final int WINDOW = 240;
+
+  /** Whether the profiler is recording */
+  private boolean enabled;
+  /** Start time of the running measurement of each phase, in nanoseconds */
+  private long[] starts;
+  /** Time spent in each phase so far this frame, in nanoseconds */
+  private long[] current;
+  /** Ring buffers of the time spent in each phase per frame, in nanoseconds */
+  private long[][] samples;
+  /** Index of the next frame to write in the ring buffers */
+  private int head;
+  /** Number of frames written to the ring buffers, up to WINDOW */
+  private int count;
+  /** Scratch array for sorting a ring buffer */
+  private long[] sorted;
+  /** Rolling statistics of each phase, in milliseconds */
+  private float[] mins, avgs, p99s;
+
+  /** The singleton instance of the profiler */
+  private static FrameProfiler profiler = null;
+
+  /**
+   * Returns the singleton instance of the profiler.
+   */
+  public static FrameProfiler getInstance() {
+    if (profiler == null) {
+      profiler = new FrameProfiler();
+    }
+    return profiler;
+  }
+
+  /**
+   * Creates a new profiler. Only used to create the singleton.
+   */
+  private FrameProfiler() {
+    starts = new long[PHASE_COUNT];
+    current = new long[PHASE_COUNT];
+    samples = new long[PHASE_COUNT][WINDOW];
+    sorted = new long[WINDOW];
+    mins = new float[PHASE_COUNT];
+    avgs = new float[PHASE_COUNT];
+    p99s = new float[PHASE_COUNT];
+  }
+
+  /**
+   * Sets whether the profiler is recording. Clears the recorded frames.
+   */
+  public void setEnabled(boolean value) {
+    enabled = value;
+    head = 0;
+    count = 0;
+    Arrays.fill(current, 0);
+  }
+
+  /**
+   * Returns whether the profiler is recording.
+   */
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * Starts timing the given phase.
+   */
+  public void begin(int phase) {
+    if (enabled) {
+      starts[phase] = System.nanoTime();
+    }
+  }
+
+  /**
+   * Stops timing the given phase, adding the elapsed time to the current frame.
+   */
+  public void end(int phase) {
+    if (enabled) {
+      current[phase] += System.nanoTime() - starts[phase];
+    }
+  }
+
+  /**
+   * Stores the phase times of the current frame in the ring buffers and
+   * starts a new frame.
+   */
+  public void endFrame() {
+    if (!enabled) {
+      return;
+    }
+    for (int i = 0; i < PHASE_COUNT; i++) {
+      samples[i][head] = current[i];
+      current[i] = 0;
+    }
+    head = (head + 1) % WINDOW;
+    count = Math.min(count + 1, WINDOW);
+  }
+
+  /**
+   * Recomputes the rolling statistics from the ring buffers.
+   */
+  public void computeStats() {
+    if (count == 0) {
+      return;
+    }
+    for (int i = 0; i < PHASE_COUNT; i++) {
+      System.arraycopy(samples[i], 0, sorted, 0, count);
+      Arrays.sort(sorted, 0, count);
+      long sum = 0;
+      for (int j = 0; j < count; j++) {
+        sum += sorted[j];
+      }
+      mins[i] = sorted[0] / 1e6f;
+      avgs[i] = sum / (count * 1e6f);
+      p99s[i] = sorted[Math.min(count - 1, (int)(count * 0.99f))] / 1e6f;
+    }
+  }
+
+  /**
+   * Returns the rolling minimum time of the given phase in milliseconds.
+   */
+  public float getMin(int phase) {
+    return mins[phase];
+  }
+
+  /**
+   * Returns the rolling average time of the given phase in milliseconds.
+   */
+  public float getAvg(int phase) {
+    return avgs[phase];
+  }
+
+  /**
+   * Returns the rolling 99th percentile time of the given phase in milliseconds.
+   */
+  public float getP99(int phase) {
+    return p99s[phase];
+  }
+
+  /**
+   * Writes the recorded frames to the given file as CSV, oldest first,
+   * with one row per frame and one column per phase in microseconds.
+   * @param file the file to write to
+   */
+  public void dump(FileHandle file) {
+    StringBuilder builder = new StringBuilder("frame");
+    for (String name : PHASE_NAMES) {
+      builder.append(',').append(name);
+    }
+    builder.append('\n');
+    int first = (head - count + WINDOW) % WINDOW;
+    for (int j = 0; j < count; j++) {
+      builder.append(j);
+      for (int i = 0; i < PHASE_COUNT; i++) {
+        builder.append(',').append(samples[i][(first + j) % WINDOW] / 1000);
+      }
+      builder.append('\n');
+    }
+    file.writeString(builder.toString(), false);
+  }
+}
@@ -2,12 +2,8 @@ package com.glassboxgames.rubato;
 
 import com.badlogic.gdx.*;
 import com.badlogic.gdx.assets.*;
-import com.badlogic.gdx.assets.loaders.*;
-import com.badlogic.gdx.assets.loaders.resolvers.*;
 import com.badlogic.gdx.audio.*;
 import com.badlogic.gdx.graphics.*;
-import com.badlogic.gdx.graphics.g2d.*;
-import com.badlogic.gdx.graphics.g2d.freetype.*;
 import com.badlogic.gdx.graphics.glutils.*;
 import com.badlogic.gdx.utils.*;
 import com.glassboxgames.rubato.serialize.*;
@@ -28,20 +24,12 @@ public class GDXRoot extends Game implements ScreenListener {
   private GameCanvas canvas;
   /** Manager for loading assets */
   private AssetManager manager;
-  /** Mode for the main menu */
-  private MainMenu mainMenu;
   /** Mode for loading assets */
   private LoadingMode loadingMode;
   /** Mode for playing the game */
   private GameMode gameMode;
-  /** Mode for drawing cutscenes */
-  private CutsceneMode cutsceneMode;
-  /** Mode for editing levels */
-  private EditorMode editorMode;
-  /** Mode for selecting level */
-  private SelectMode selectMode;
-  /** Mode for settings screen */
-  private SettingsMode settingsMode;
+  /** Registry of the other modes, constructed on first use */
+  private ScreenRegistry screens;
 
   /** Current chapter index */
   private int chapterIndex;
@@ -58,66 +46,140 @@ public class GDXRoot extends Game implements ScreenListener {
   private int fadeCount;
   /** Whether the credits have been shown */
   private boolean credits;
+  /** Path of an input recording to replay after loading, if any */
+  private String replayPath;
 
   public GDXRoot() {
     manager = new AssetManager();
-    // Add font support to the asset manager
-    FileHandleResolver resolver = new InternalFileHandleResolver();
-		manager.setLoader(FreeTypeFontGenerator.class,
-                      new FreeTypeFontGeneratorLoader(resolver));
-		manager.setLoader(BitmapFont.class, ".ttf",
-                      new FreetypeFontLoader(resolver));
+  }
+
+  /**
+   * Sets an input recording to replay as soon as loading finishes.
+   * @param path path to the recording file
+   */
+  public void setReplay(String path) {
+    replayPath = path;
+  }
+
+  /**
+   * Starts replaying the recording at the replay path, returning whether it was started.
+   */
+  private boolean startReplay() {
+    try {
+      InputRecording replay = InputRecording.read(Gdx.files.absolute(replayPath));
+      chapterIndex = replay.getChapter();
+      levelIndex = replay.getLevel();
+      level = LevelCatalog.getInstance().get(chapterIndex, levelIndex);
+      InputController.getInstance().startReplay(replay);
+      gameMode.setNextLevel(level, false);
+      setNextScreen(gameMode);
+      return true;
+    } catch (RuntimeException e) {
+      Gdx.app.error("GDXRoot", "Could not replay " + replayPath, e);
+      return false;
+    }
   }
 
   @Override
   public void create() {
-    for (String path : Shared.TEXTURE_PATHS.values()) {
-      manager.load(path, Texture.class);
-    }
+    TexturePipeline.getInstance().setManager(manager);
+    BundleController.getInstance().setManager(manager);
+    BundleController.getInstance().preloadCore();
     for (String path : Shared.SOUND_PATHS.values()) {
       manager.load(path, Sound.class);
     }
-    for (String key : Shared.FONT_METADATA.keys()) {
-      Array<Float> metadata = Shared.FONT_METADATA.get(key);
-      manager.load(key, BitmapFont.class, Shared.createFontLoaderParams(metadata.get(0).intValue(),
-                                                                        metadata.get(1).intValue(),
-                                                                        metadata.get(2).intValue()));
-    }
     canvas = new GameCanvas();
     loadingMode = new LoadingMode(canvas, manager, this);
-    mainMenu = new MainMenu(this);
     gameMode = new GameMode(canvas, this);
-    cutsceneMode = new CutsceneMode(canvas, this);
-    editorMode = new EditorMode(this);
-    selectMode = new SelectMode(this);
-    settingsMode = new SettingsMode(this);
+    screens = new ScreenRegistry();
+    registerScreens();
     gameMode.preloadContent(manager);
     setScreen(loadingMode);
   }
 
+  /**
+   * Registers the modes constructed on first use. The editor and settings
+   * modes are rarely visited, so they are disposed under memory pressure.
+   */
+  private void registerScreens() {
+    screens.register(MainMenu.class, new ScreenRegistry.Factory<MainMenu>() {
+      @Override
+      public MainMenu create() {
+        MainMenu mainMenu = new MainMenu(GDXRoot.this);
+        mainMenu.initUI();
+        return mainMenu;
+      }
+    }, false);
+    screens.register(SelectMode.class, new ScreenRegistry.Factory<SelectMode>() {
+      @Override
+      public SelectMode create() {
+        SelectMode selectMode = new SelectMode(GDXRoot.this);
+        selectMode.initUI();
+        return selectMode;
+      }
+    }, false);
+    screens.register(CutsceneMode.class, new ScreenRegistry.Factory<CutsceneMode>() {
+      @Override
+      public CutsceneMode create() {
+        return new CutsceneMode(canvas, GDXRoot.this);
+      }
+    }, false);
+    screens.register(EditorMode.class, new ScreenRegistry.Factory<EditorMode>() {
+      @Override
+      public EditorMode create() {
+        EditorMode editorMode = new EditorMode(GDXRoot.this);
+        editorMode.initUI();
+        return editorMode;
+      }
+    }, true);
+    screens.register(SettingsMode.class, new ScreenRegistry.Factory<SettingsMode>() {
+      @Override
+      public SettingsMode create() {
+        SettingsMode settingsMode = new SettingsMode(GDXRoot.this);
+        settingsMode.initUI();
+        return settingsMode;
+      }
+    }, true);
+  }
+
   @Override
   public void resize(int width, int height) {
     canvas.resize();
-    mainMenu.resize(width, height);
     gameMode.resize(width, height);
-    cutsceneMode.resize(width, height);
-    editorMode.resize(width, height);
+    screens.resize(width, height);
     super.resize(width, height);
   }
 
   /**
-   * Starts the transition to the given screen.
+   * Starts the transition to the given screen, opening its music during the fade.
    */
   public void setNextScreen(Screen next) {
     if (fadeState == FADE_NONE) {
       nextScreen = next;
       fadeState = FADE_OUT;
       fadeCount = 0;
+      prefetchMusic(next);
+    }
+  }
+
+  /**
+   * Starts opening the music played by the given screen. Cutscenes keep the
+   * current music, and the game plays the music of the next level's chapter.
+   */
+  private void prefetchMusic(Screen next) {
+    if (next == gameMode) {
+      if (level != null) {
+        MusicController.getInstance().prefetch(level.chapter);
+      }
+    } else if (!(next instanceof CutsceneMode)) {
+      MusicController.getInstance().prefetch("adagio");
     }
   }
 
   @Override
   public void render() {
+    TexturePipeline.getInstance().update();
+    MusicController.getInstance().update(Gdx.graphics.getDeltaTime());
     super.render();
     if (fadeState != FADE_NONE) {
       float alpha;
@@ -137,6 +199,10 @@ public class GDXRoot extends Game implements ScreenListener {
       if (fadeCount > FADE_STATE_DURATION) {
         if (fadeState == FADE_DELAY) {
           setScreen(nextScreen);
+          if (nextScreen instanceof MainMenu && ScreenRegistry.isMemoryLow()) {
+            int count = screens.trim(nextScreen);
+            Gdx.app.log("GDXRoot", "Disposed " + count + " idle screens under memory pressure");
+          }
         }
         fadeCount = 0;
         fadeState = (fadeState + 1) % NUM_FADE_STATES;
@@ -156,19 +222,15 @@ public class GDXRoot extends Game implements ScreenListener {
         manager.unload(path);
       }
     }
-    for (String key : Shared.FONT_METADATA.keys()) {
-      if (manager.isLoaded(key)) {
-        manager.unload(key);
-      }
-    }
+    TexturePipeline.getInstance().dispose();
+    FontCache.getInstance().dispose();
     MusicController.getInstance().dispose();
+    ParticleController.getInstance().dispose();
+    LevelCatalog.getInstance().dispose();
     gameMode.unloadContent(manager);
-    mainMenu.dispose();
     gameMode.dispose();
-    cutsceneMode.dispose();
-    editorMode.dispose();
-    selectMode.dispose();
-    settingsMode.dispose();
+    loadingMode.dispose();
+    screens.dispose();
     setScreen(null);
     canvas.dispose();
     canvas = null;
@@ -181,30 +243,22 @@ public class GDXRoot extends Game implements ScreenListener {
   public void exitScreen(Screen screen, int exitCode) {
     SoundController soundController = SoundController.getInstance();
     SaveController saveController = SaveController.getInstance();
-    Array<LevelData> levels = Shared.CHAPTER_LEVELS.get(chapterIndex);
+    LevelCatalog catalog = LevelCatalog.getInstance();
     if (screen == loadingMode) {
       if (exitCode == LoadingMode.EXIT_DONE) {
-        for (String key : Shared.TEXTURE_PATHS.keys()) {
-          Texture texture = manager.get(Shared.TEXTURE_PATHS.get(key), Texture.class);
-          texture.setFilter(Texture.TextureFilter.Linear, Texture.TextureFilter.Linear);
-          Shared.TEXTURE_MAP.put(key, texture);
-        }
+        BundleController.getInstance().loadCore();
         for (String key : Shared.SOUND_PATHS.keys()) {
           soundController.allocate(manager, Shared.getSoundPath(key));
         }
-        for (String key : Shared.FONT_METADATA.keys()) {
-          Shared.FONT_MAP.put(key, manager.get(key, BitmapFont.class));
-        }
+        FontCache.getInstance().load();
 
         gameMode.loadContent(manager);
-        mainMenu.initUI();
-        selectMode.initUI();
         gameMode.initUI();
-        editorMode.initUI();
-        settingsMode.initUI();
 
         soundController.setVolume(saveController.getSoundVolume());
-        setNextScreen(mainMenu);
+        if (replayPath == null || !startReplay()) {
+          setNextScreen(screens.get(MainMenu.class));
+        }
 
         // Pixmap pixmap = new Pixmap(Gdx.files.internal(CURSOR_FILE));
         // int xHotspot = pixmap.getWidth() / 2;
@@ -216,42 +270,44 @@ public class GDXRoot extends Game implements ScreenListener {
                       new RuntimeException());
         Gdx.app.exit();
       }
-    } else if (screen == mainMenu) {
+    } else if (screen instanceof MainMenu) {
       if (exitCode == MainMenu.EXIT_PLAY) {
         if (saveController.getLevelsUnlocked(0) == 0) {
-          level = levels.get(levelIndex);
-          if (levels.size > 0) {
+          level = catalog.get(chapterIndex, levelIndex);
+          catalog.prefetch(chapterIndex, levelIndex + 1);
+          if (catalog.getLevelCount(chapterIndex) > 0) {
             saveController.setLevelsUnlocked(chapterIndex, 1);
           } else if (chapterIndex < Shared.CHAPTER_NAMES.size - 1) {
             saveController.setLevelsUnlocked(chapterIndex + 1, 1);
           }
-          cutsceneMode.setNextCutscene(Shared.CHAPTER_NAMES.get(0) + "_cutscene", 60, 1);
-          setNextScreen(cutsceneMode);
+          screens.get(CutsceneMode.class).setNextCutscene(Shared.CHAPTER_NAMES.get(0) + "_cutscene", 60, 1);
+          setNextScreen(screens.get(CutsceneMode.class));
         } else {
-          setNextScreen(selectMode);
+          setNextScreen(screens.get(SelectMode.class));
         }
       } else if (exitCode == MainMenu.EXIT_EDITOR) {
-        setNextScreen(editorMode);
+        setNextScreen(screens.get(EditorMode.class));
       } else if (exitCode == MainMenu.EXIT_SETTINGS) {
-        setNextScreen(settingsMode);
+        setNextScreen(screens.get(SettingsMode.class));
       } else if (exitCode == MainMenu.EXIT_QUIT) {
         Gdx.app.exit();
       }
-    } else if (screen == selectMode) {
+    } else if (screen instanceof SelectMode) {
       if (exitCode == SelectMode.EXIT_MENU) {
-        setNextScreen(mainMenu);
+        setNextScreen(screens.get(MainMenu.class));
       } else if (exitCode == SelectMode.EXIT_PLAY) {
-        chapterIndex = selectMode.getChapter();
-        levelIndex = selectMode.getLevel();
-        level = Shared.CHAPTER_LEVELS.get(chapterIndex).get(levelIndex);
+        chapterIndex = screens.get(SelectMode.class).getChapter();
+        levelIndex = screens.get(SelectMode.class).getLevel();
+        level = catalog.get(chapterIndex, levelIndex);
+        catalog.prefetch(chapterIndex, levelIndex + 1);
         gameMode.setNextLevel(level, false);
         setNextScreen(gameMode);
       }
     } else if (screen == gameMode) {
       if (exitCode == GameMode.EXIT_MENU) {
-        setNextScreen(mainMenu);
+        setNextScreen(screens.get(MainMenu.class));
       } else if (exitCode == GameMode.EXIT_LEVELS) {
-        setNextScreen(selectMode);
+        setNextScreen(screens.get(SelectMode.class));
       } else if (exitCode == GameMode.EXIT_COMPLETE) {
         int unlocked = saveController.getLevelsUnlocked(chapterIndex);
         if (levelIndex == unlocked - 1) {
@@ -265,27 +321,28 @@ public class GDXRoot extends Game implements ScreenListener {
           }
         }
         levelIndex++;
-        if (levelIndex >= levels.size) {
+        if (levelIndex >= catalog.getLevelCount(chapterIndex)) {
           if (chapterIndex < Shared.CHAPTER_NAMES.size - 1) {
             levelIndex = 0;
             chapterIndex++;
-            levels = Shared.CHAPTER_LEVELS.get(chapterIndex);
-            level = levels.get(levelIndex);
-            cutsceneMode.setNextCutscene(Shared.CHAPTER_NAMES.get(chapterIndex) + "_cutscene", 60, 1);
+            level = catalog.get(chapterIndex, levelIndex);
+            catalog.prefetch(chapterIndex, levelIndex + 1);
+            screens.get(CutsceneMode.class).setNextCutscene(Shared.CHAPTER_NAMES.get(chapterIndex) + "_cutscene", 60, 1);
           } else {
             level = null;
-            cutsceneMode.setNextCutscene("end_cutscene", 60, 1);
+            screens.get(CutsceneMode.class).setNextCutscene("end_cutscene", 60, 1);
           }
-          setNextScreen(cutsceneMode);
+          setNextScreen(screens.get(CutsceneMode.class));
         } else {
-          level = levels.get(levelIndex);
+          level = catalog.get(chapterIndex, levelIndex);
+          catalog.prefetch(chapterIndex, levelIndex + 1);
           gameMode.setNextLevel(level, false);
           setNextScreen(gameMode);
         }
       } else if (exitCode == GameMode.EXIT_RESET) {
         setNextScreen(gameMode);
       } else if (exitCode == GameMode.EXIT_EDIT) {
-        setNextScreen(editorMode);
+        setNextScreen(screens.get(EditorMode.class));
       } else if (exitCode == GameMode.EXIT_CHECKPOINT) {
         // checkpoint logic
       } else {
@@ -293,9 +350,9 @@ public class GDXRoot extends Game implements ScreenListener {
                       new RuntimeException());
         Gdx.app.exit();
       }
-    } else if (screen == cutsceneMode) {
+    } else if (screen instanceof CutsceneMode) {
       if (exitCode == CutsceneMode.EXIT_ESCAPE) {
-        setNextScreen(selectMode);
+        setNextScreen(screens.get(SelectMode.class));
       } else if (exitCode == CutsceneMode.EXIT_COMPLETE) {
         if (level != null) {
           gameMode.setNextLevel(level, false);
@@ -303,37 +360,37 @@ public class GDXRoot extends Game implements ScreenListener {
         } else if (!credits) {
           MusicController.getInstance().play("adagio");
           credits = true;
-          cutsceneMode.setNextCutscene("credits", 240, 1);
-          setNextScreen(cutsceneMode);
+          screens.get(CutsceneMode.class).setNextCutscene("credits", 240, 1);
+          setNextScreen(screens.get(CutsceneMode.class));
         } else {
           credits = false;
-          setNextScreen(mainMenu);
+          setNextScreen(screens.get(MainMenu.class));
         }
       } else {
         Gdx.app.exit();
       }
-    } else if (screen == editorMode) {
+    } else if (screen instanceof EditorMode) {
       if (exitCode == EditorMode.EXIT_MENU) {
-        setNextScreen(mainMenu);
+        setNextScreen(screens.get(MainMenu.class));
       } else if (exitCode == EditorMode.EXIT_TEST) {
-        level = editorMode.exportLevel();
+        level = screens.get(EditorMode.class).exportLevel();
         gameMode.setNextLevel(level, true);
         setNextScreen(gameMode);
       } else {
         Gdx.app.exit();
       }
-    } else if (screen == selectMode) {
+    } else if (screen instanceof SelectMode) {
       if (exitCode == SelectMode.EXIT_MENU) {
-        setNextScreen(mainMenu);
+        setNextScreen(screens.get(MainMenu.class));
       } else if (exitCode == SelectMode.EXIT_PLAY) {
         setNextScreen(gameMode);
       } else {
         Gdx.app.exit();
       }
     }
-    else if (screen == settingsMode) {
+    else if (screen instanceof SettingsMode) {
       if (exitCode == SelectMode.EXIT_MENU) {
-        setNextScreen(mainMenu);
+        setNextScreen(screens.get(MainMenu.class));
       } else {
         Gdx.app.exit();
       }
@@ -70,6 +70,8 @@ public class GameCanvas {
   private Vector2 vertex;
   /** Cache object to handle raw textures */
   private TextureRegion holder;
+  /** Cache object to lay out text */
+  private GlyphLayout layout;
 
   /**
    * Creates a new GameCanvas determined by the application configuration.
@@ -87,6 +89,7 @@ public class GameCanvas {
     camera.setToOrtho(false);
     camera.position.set(camera.viewportWidth / 2f, camera.viewportHeight / 2f, 0);
     camera.update();
+    cameraPos.set(camera.position.x, camera.position.y);
 
     // Set the projection matrix (for proper scaling)
     spriteBatch.setProjectionMatrix(camera.combined);
@@ -94,6 +97,7 @@ public class GameCanvas {
 
     // Initialize the cache objects
     holder = new TextureRegion();
+    layout = new GlyphLayout();
     local = new Affine2();
     global = new Matrix4();
     vertex = new Vector2();
@@ -328,6 +332,46 @@ public class GameCanvas {
     active = DrawPass.INACTIVE;
   }
 
+  /**
+   * Start drawing into an offscreen frame buffer whose bottom left corner is
+   * at the given position. The buffer is cleared to transparent, and colors are
+   * written with pre-multiplied alpha so that the result can be drawn back
+   * with ALPHA_BLEND.
+   *
+   * @param buffer the frame buffer to draw into
+   * @param x      the x-coordinate of the bottom left corner of the buffer
+   * @param y      the y-coordinate of the bottom left corner of the buffer
+   */
+  public void beginBuffer(FrameBuffer buffer, float x, float y) {
+    if (active != DrawPass.INACTIVE) {
+      Gdx.app.error("GameCanvas", "Cannot draw to a buffer while drawing active", new IllegalStateException());
+      return;
+    }
+    buffer.begin();
+    Gdx.gl.glClearColor(0f, 0f, 0f, 0f);
+    Gdx.gl.glClear(GL20.GL_COLOR_BUFFER_BIT);
+    global.setToOrtho2D(x, y, buffer.getWidth(), buffer.getHeight());
+    spriteBatch.setProjectionMatrix(global);
+    spriteBatch.setBlendFunctionSeparate(GL20.GL_SRC_ALPHA, GL20.GL_ONE_MINUS_SRC_ALPHA,
+                                         GL20.GL_ONE, GL20.GL_ONE_MINUS_SRC_ALPHA);
+    spriteBatch.begin();
+    active = DrawPass.STANDARD;
+  }
+
+  /**
+   * Ends drawing into an offscreen frame buffer, restoring the blend state.
+   *
+   * @param buffer the frame buffer being drawn into
+   */
+  public void endBuffer(FrameBuffer buffer) {
+    spriteBatch.end();
+    buffer.end();
+    BlendState state = blend;
+    blend = null;
+    setBlendState(state != null ? state : BlendState.NO_PREMULT);
+    active = DrawPass.INACTIVE;
+  }
+
   /**
    * Moves the camera to the given position. All units are in pixels.
    *
@@ -335,6 +379,7 @@ public class GameCanvas {
    */
   public void moveCamera(Vector2 pos) {
     camera.position.set(pos.x, pos.y, camera.position.z);
+    cameraPos.set(camera.position.x, camera.position.y);
     camera.update();
   }
 
@@ -363,6 +408,17 @@ public class GameCanvas {
     return cameraPos;
   }
 
+  /**
+   * Stores the rectangle of the level visible to the camera in the given
+   * rectangle and returns it. All units are in pixels.
+   *
+   * @param view the rectangle to store the visible bounds in
+   */
+  public Rectangle getCameraBounds(Rectangle view) {
+    return view.set(cameraPos.x - getWidth() / 2f, cameraPos.y - getHeight() / 2f,
+                    getWidth(), getHeight());
+  }
+
   /**
    * Draw the background image.
    *
@@ -386,12 +442,26 @@ public class GameCanvas {
    * @param h Level height
    */
   public void drawBackground(Texture image, Color tint, float w, float h) {
+    drawBackground(image, tint, 0, 0, w, h);
+  }
+
+  /**
+   * Draw part of the background image at the given position.
+   *
+   * @param image Texture to draw as an overlay
+   * @param tint The color tint
+   * @param x The x-coordinate of the bottom left corner
+   * @param y The y-coordinate of the bottom left corner
+   * @param w Width to draw the image at
+   * @param h Height to draw the image at
+   */
+  public void drawBackground(Texture image, Color tint, float x, float y, float w, float h) {
     if (active != DrawPass.STANDARD) {
       Gdx.app.error("GameCanvas", "Cannot draw without active begin()", new IllegalStateException());
       return;
     }
     spriteBatch.setColor(tint);
-    spriteBatch.draw(image, 0, 0, w, h);
+    spriteBatch.draw(image, x, y, w, h);
   }
 
   /**
@@ -561,14 +631,14 @@ public class GameCanvas {
    * @param x The x-coordinate of the lower-left corner
    * @param y The y-coordinate of the lower-left corner
    */
-  public void drawText(String text, BitmapFont font, Color color, float x, float y) {
+  public void drawText(CharSequence text, BitmapFont font, Color color, float x, float y) {
     if (active != DrawPass.STANDARD) {
       Gdx.app.error("GameCanvas", "Cannot draw without active begin()", new IllegalStateException());
       return;
     }
 
     font.setColor(color);
-    GlyphLayout layout = new GlyphLayout(font,text);
+    layout.setText(font, text);
     font.draw(spriteBatch, layout, x, y);
   }
 
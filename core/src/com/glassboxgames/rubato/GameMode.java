@@ -1,9 +1,9 @@
 package com.glassboxgames.rubato;
 
-import java.text.DecimalFormat;
 import com.badlogic.gdx.*;
 import com.badlogic.gdx.audio.*;
 import com.badlogic.gdx.assets.*;
+import com.badlogic.gdx.files.*;
 import com.badlogic.gdx.graphics.*;
 import com.badlogic.gdx.graphics.g2d.*;
 import com.badlogic.gdx.graphics.g2d.freetype.*;
@@ -13,6 +13,7 @@ import com.badlogic.gdx.scenes.scene2d.*;
 import com.badlogic.gdx.scenes.scene2d.ui.*;
 import com.badlogic.gdx.scenes.scene2d.utils.*;
 import com.badlogic.gdx.utils.*;
+import com.badlogic.gdx.utils.StringBuilder;
 import com.glassboxgames.rubato.entity.*;
 import com.glassboxgames.rubato.entity.Tooltip;
 import com.glassboxgames.rubato.serialize.*;
@@ -56,16 +57,38 @@ public class GameMode implements Screen {
   /** Pause code for returning to main menu */
   public static final int PAUSE_MENU = 3;
 
+  /** External directory for input recordings */
+  private static final String REPLAY_DIR = Shared.EXTERNAL_PATH + "Replays/";
+  /** Directory that frame profiles are written to */
+  private static final String PROFILE_DIR = Shared.EXTERNAL_PATH + "Profiles/";
+  /** Number of frames between recomputations of the dev mode profiler statistics */
+  private static final int DEV_STATS_INTERVAL = 15;
+
   /** Dev mode draw offset */
   private static final float DEV_DRAW_OFFSET = 20f;
 
+  /** Default simulation ticks per second */
+  public static final float DEFAULT_TICK_RATE = 60f;
+  /** Maximum frame time fed to the simulation, to avoid spiraling after long hitches */
+  private static final float MAX_FRAME_TIME = 0.25f;
+  /** Box2D velocity iterations per tick */
+  public static final int VELOCITY_ITERATIONS = 8;
+  /** Box2D position iterations per tick */
+  public static final int POSITION_ITERATIONS = 3;
+  /** Fraction of the distance to the player the camera closes per 1/60 s */
+  private static final float CAMERA_FOLLOW = 0.25f;
+
   /** Gravity **/
-  private static final float GRAVITY = -50f;
-  /** Bottom boundary */
-  private static final float Y_BOUND = 0.3f;
+  public static final float GRAVITY = -50f;
 
   /** Array tracking all loaded assets (for unloading purposes) */
   private Array<String> assets;
+  /** Asset manager holding the entity textures */
+  private AssetManager manager;
+  /** States whose textures are held for the current level */
+  private Array<State> levelStates;
+  /** Scratch array of states queued for the next level */
+  private Array<State> queuedStates;
   
   /** Whether this screen is in the process of exiting */
   private boolean exiting;
@@ -82,6 +105,18 @@ public class GameMode implements Screen {
   private boolean active;
   /** The Box2D world */
   private World world;
+  /** Simulation ticks per second */
+  private float tickRate;
+  /** Unsimulated time carried over between frames */
+  private float accumulator;
+  /** Fraction of a tick elapsed since the last simulated tick */
+  private float alpha;
+  /** Time since the last frame */
+  private float frameDelta;
+  /** Number of fixtures created during the last simulation tick */
+  private int tickFixturesCreated;
+  /** Number of fixtures destroyed during the last simulation tick */
+  private int tickFixturesDestroyed;
 
   /** Whether this game mode is paused */
   private boolean paused;
@@ -106,10 +141,10 @@ public class GameMode implements Screen {
   /** The stage for chapter completion */
   private Stage chapterStage;
 
-  /** List of all entity states currently loaded */
-  private Array<State> states;
   /** Current level */
   private LevelContainer level;
+  /** Simulation of the current level, created once its physics are active */
+  private Simulation simulation;
 
   /** Upper left corner of the visible canvas **/
   private Vector2 uiPos;
@@ -119,6 +154,10 @@ public class GameMode implements Screen {
   private boolean devMode;
   /** Numerical selector for dev mode */
   private int devSelect;
+  /** Reused text buffer for the dev mode display */
+  private StringBuilder devText = new StringBuilder();
+  /** Frames until the dev mode profiler statistics are recomputed */
+  private int devStatsCountdown;
   /** Whether the current level is editable */
   private boolean editable;
   /** When the player timer started (in ms); resets on resume */
@@ -139,14 +178,25 @@ public class GameMode implements Screen {
     this.listener = listener;
 
     assets = new Array();
+    levelStates = new Array<State>();
+    queuedStates = new Array<State>();
     uiPos = new Vector2();
     devSelect = -1;
+    tickRate = DEFAULT_TICK_RATE;
 
     world = new World(new Vector2(0, GRAVITY), false);
     world.setContactListener(CollisionController.getInstance());
 
-    // Initialize entity state machines
-    states = new Array<State>();
+    initStates();
+    initParticles();
+  }
+
+  /**
+   * Initializes the state machines of every entity type.
+   * @return array of all entity states
+   */
+  public static Array<State> initStates() {
+    Array<State> states = new Array<State>();
     states.addAll(Player.initStates());
     states.addAll(Checkpoint.initStates());
     states.addAll(Platform.initStates());
@@ -157,15 +207,43 @@ public class GameMode implements Screen {
     states.addAll(Blob.initStates());
     states.addAll(Altar.initStates());
     states.addAll(Tooltip.initStates());
+    return states;
+  }
+
+  /**
+   * Registers the particle effects used in gameplay, so that they are parsed
+   * before the first level starts.
+   */
+  public static void initParticles() {
+    ParticleController particles = ParticleController.getInstance();
+    particles.register(Player.DRAIN_EFFECT, 4, 16);
+    particles.register(Checkpoint.ACTIVE_EFFECT, 1, 2);
+  }
+
+  /**
+   * Returns the number of simulation ticks per second.
+   */
+  public float getTickRate() {
+    return tickRate;
   }
 
   /**
-   * Adds the assets to load for the game to the given manager.
+   * Sets the number of simulation ticks per second.
+   * Gameplay constants are tuned per tick for the default rate.
+   */
+  public void setTickRate(float tickRate) {
+    this.tickRate = tickRate;
+  }
+
+  /**
+   * Adds the assets to load for the game to the given manager. Only the player
+   * states are held for the whole game, since every level has a player; the
+   * other states are loaded with the levels that use them.
    * @param manager asset manager to use
    */
   public void preloadContent(AssetManager manager) {
-    for (State state : states) {
-      state.preloadContent(manager);
+    for (State state : Player.states) {
+      state.acquire(manager);
     }
   }
 
@@ -174,9 +252,35 @@ public class GameMode implements Screen {
    * @param manager the asset manager to use
    */
   public void loadContent(AssetManager manager) {
-    for (State state : states) {
+    this.manager = manager;
+    for (State state : Player.states) {
+      state.loadContent(manager);
+    }
+  }
+
+  /**
+   * Loads the textures of the states used by the given level and releases
+   * those of the previous level, so that only the states in use stay loaded.
+   * @param used states used by the new level
+   */
+  private void holdStates(ObjectSet<State> used) {
+    queuedStates.clear();
+    for (State state : used) {
+      if (state.acquire(manager)) {
+        queuedStates.add(state);
+      }
+    }
+    TexturePipeline.getInstance().finishLoading();
+    for (State state : queuedStates) {
       state.loadContent(manager);
     }
+    for (State state : levelStates) {
+      state.release(manager);
+    }
+    levelStates.clear();
+    for (State state : used) {
+      levelStates.add(state);
+    }
   }
 
   /**
@@ -279,8 +383,12 @@ public class GameMode implements Screen {
         manager.unload(s);
       }
     }
-    for (State state : states) {
-      state.unloadContent(manager);
+    for (State state : levelStates) {
+      state.release(manager);
+    }
+    levelStates.clear();
+    for (State state : Player.states) {
+      state.release(manager);
     }
   }
 
@@ -292,6 +400,7 @@ public class GameMode implements Screen {
   public void setNextLevel(LevelData data, boolean editable) {
     nextData = data;
     nextEditable = editable;
+    BundleController.getInstance().load(data.chapter);
   }
 
   /**
@@ -300,10 +409,15 @@ public class GameMode implements Screen {
   public void initLevel() {
     if (level != null) {
       level.deactivatePhysics(world);
+      level.dispose();
     }
+    CollisionController.getInstance().clearEvents();
 
     editable = nextEditable;
+    BundleController.getInstance().finishLoading(nextData.chapter);
     level = new LevelContainer(nextData);
+    holdStates(level.getUsedStates());
+    level.initGraphics(canvas);
     chapterInfo.setVisible(false);
     String chapter = level.getChapter();
     chapterIcon.setDrawable(Shared.getDrawable(chapter + "_plain"));
@@ -311,11 +425,55 @@ public class GameMode implements Screen {
     chapterTime.setVisible(false);
 
     gameState = GameState.INTRO;
+    accumulator = 0;
+    alpha = 0;
     exiting = false;
     resumeGame();
     startTime = TimeUtils.millis();
 
     MusicController.getInstance().play(chapter);
+
+    InputController input = InputController.getInstance();
+    if (input.shouldRecordLevels() && !input.isReplaying()) {
+      LevelCatalog catalog = LevelCatalog.getInstance();
+      input.startRecording(catalog.getChapterIndex(nextData), catalog.getLevelIndex(nextData));
+    }
+  }
+
+  /**
+   * Saves the current input recording, or reports the result of the current replay.
+   */
+  private void finishRecording() {
+    InputController input = InputController.getInstance();
+    if (input.isRecording()) {
+      InputRecording recording = input.stopRecording();
+      FileHandle file = Gdx.files.external(REPLAY_DIR + TimeUtils.millis() + InputRecording.EXTENSION);
+      try {
+        recording.write(file);
+        Gdx.app.log("GameMode", "Saved " + recording.getLength() + " ticks of input to " + file.path());
+      } catch (GdxRuntimeException e) {
+        Gdx.app.error("GameMode", "Could not save input recording", e);
+      }
+    }
+    if (input.isReplaying()) {
+      if (input.getDesyncTick() == -1) {
+        Gdx.app.log("GameMode", "Replay finished in sync");
+      }
+      input.stopReplay();
+    }
+  }
+
+  /**
+   * Writes the recorded frame profile to a CSV file.
+   */
+  private void dumpProfile() {
+    FileHandle file = Gdx.files.external(PROFILE_DIR + TimeUtils.millis() + ".csv");
+    try {
+      FrameProfiler.getInstance().dump(file);
+      Gdx.app.log("GameMode", "Saved frame profile to " + file.path());
+    } catch (GdxRuntimeException e) {
+      Gdx.app.error("GameMode", "Could not save frame profile", e);
+    }
   }
 
   /**
@@ -383,6 +541,7 @@ public class GameMode implements Screen {
                                                   TimeUtils.timeSinceMillis(startTime));
       }
       exiting = true;
+      finishRecording();
       listener.exitScreen(this, code);
     }
   }
@@ -393,7 +552,10 @@ public class GameMode implements Screen {
    */
   private void update(float delta) {
     InputController input = InputController.getInstance();
+    FrameProfiler profiler = FrameProfiler.getInstance();
+    profiler.begin(FrameProfiler.INPUT);
     input.readInput();
+    profiler.end(FrameProfiler.INPUT);
     
     if (paused) {
       if (input.pressedExit()) {
@@ -403,6 +565,7 @@ public class GameMode implements Screen {
     } else if (gameState == GameState.INTRO) {
       if (level != null) {
         level.activatePhysics(world);
+        simulation = new Simulation(world, level, editable);
         gameState = GameState.PLAY;
       }
     } else if (gameState == GameState.PLAY) {
@@ -424,11 +587,12 @@ public class GameMode implements Screen {
       if (input.pressedDevMode()) {
         devMode = !devMode;
         devSelect = -1;
-      }
-      if (input.pressedReset()) {
-        level.getPlayer().setAlive(false);
+        profiler.setEnabled(devMode);
       }
       if (devMode) {
+        if (input.pressedProfileDump()) {
+          dumpProfile();
+        }
         if (input.getDevSelect() != -1) {
           devSelect = input.getDevSelect();
         }
@@ -456,127 +620,7 @@ public class GameMode implements Screen {
         }
       }
 
-      Player player = level.getPlayer();
-      if (player.isActive()) {
-        Vector2 pos = player.getPosition();
-
-        if (pos.x >= level.getWidth()) {
-          if (editable) {
-            startExit(EXIT_RESET);
-          } else {
-            startExit(EXIT_COMPLETE);
-          }
-        }
-
-        if (pos.y < Y_BOUND) {
-          player.setAlive(false);
-        }
-
-        int horizontal = 0;
-        if (input.heldLeft()) {
-          horizontal -= 1;
-        }
-        if (input.heldRight()) {
-          horizontal += 1;
-        }
-          
-        player.setInput(horizontal);
-        player.tryFace();
-
-        if (input.pressedJump()) {
-          player.tryJump();
-        } else if (input.heldJump()) {
-          player.tryExtendJump();
-        }
-
-        if (input.pressedAttack()) {
-          player.tryAttack();
-        }
-
-        player.update(delta);
-      } else {
-        startExit(EXIT_RESET);
-      }
-
-      Array<Enemy> enemies = level.getEnemies();
-      Array<Enemy> removedEnemies = new Array<Enemy>();
-      Array<Enemy> addedEnemies = new Array<Enemy>();
-      for (Enemy enemy : enemies) {
-        if (enemy.shouldRemove()) {
-          enemy.deactivatePhysics(world);
-          removedEnemies.add(enemy);
-        } else {
-          enemy.update(delta);
-          if (enemy instanceof Wisp) {
-            Array<Enemy> spawned = ((Wisp) enemy).getSpawned();
-            for (Enemy spawn : spawned) {
-              spawn.activatePhysics(world);
-              addedEnemies.add(spawn);
-            }
-            spawned.clear();
-          }
-        }
-      }
-      enemies.removeAll(removedEnemies, true);
-      enemies.addAll(addedEnemies);
-
-      Array<Platform> platforms = level.getPlatforms();
-      Array<Platform> removedPlatforms = new Array<Platform>();
-      for (Platform platform : platforms) {
-        if (platform.shouldRemove()) {
-          platform.deactivatePhysics(world);
-          removedPlatforms.add(platform);
-        } else {
-          platform.update(delta);
-        }
-      }
-      platforms.removeAll(removedPlatforms, true);
-        
-      Checkpoint checkpoint = level.getCheckpoint();
-      if (checkpoint != null) {
-        checkpoint.update(delta);
-        if (checkpoint.wasJustActivated()) {
-          if (level.isCompletion()) {
-            setChapterCompletion();
-          }
-          level.removeRightWall();
-          // listener.exitScreen(this, EXIT_CHECKPOINT);
-        }
-      }
-
-      Altar altar = level.getAltar();
-      if (altar != null) {
-        altar.update(delta);
-        if (altar.isPlayerSeen() && !editable) {
-          gameState = GameState.ALTAR;
-        }
-      }
-
-      Array<Tooltip> tooltips = level.getTooltips();
-      for (Tooltip tooltip : tooltips) {
-        tooltip.update(delta);
-      }
-
-      if (player.isActive()) {
-        player.sync();
-      }
-      for (Enemy enemy : level.getEnemies()) {
-        enemy.sync();
-      }
-      for (Platform platform : level.getPlatforms()) {
-        platform.sync();
-      }
-      if (checkpoint != null) {
-        checkpoint.sync();
-      }
-      if (altar != null) {
-        altar.sync();
-      }
-      for (Tooltip tooltip : tooltips) {
-        tooltip.sync();
-      }
-
-      world.step(1 / 60f, 8, 3);
+      simulate(delta);
       gameStage.act(delta);
     } else if (gameState == GameState.ALTAR) {
       if (input.pressedExit()) {
@@ -587,46 +631,67 @@ public class GameMode implements Screen {
         }          
         return;
       }
-      Player player = level.getPlayer();
-      if (level.getAltar().isPlayerClose()) {
-        player.setInput(0);
-        player.startEnd();
-        if (player.getCount() > player.getState().getLength()) {
-          startExit(EXIT_COMPLETE);
-        }
-      } else {
-        player.setInput(1);
-      }
-      player.update(delta);
-      player.sync();
-
-      world.step(1 / 60f, 8, 3);
+      simulate(delta);
       gameStage.act(delta);
     }
 
     updateSound();
   }
 
+  /**
+   * Runs as many fixed simulation ticks as have accumulated since the last frame.
+   * @param delta time in seconds since last frame
+   */
+  private void simulate(float delta) {
+    float step = 1 / tickRate;
+    accumulator += Math.min(delta, MAX_FRAME_TIME);
+    while (accumulator >= step) {
+      Entity.resetFixtureCounts();
+      int code = simulation.tick(step);
+      tickFixturesCreated = Entity.getFixturesCreated();
+      tickFixturesDestroyed = Entity.getFixturesDestroyed();
+      Checkpoint checkpoint = level.getCheckpoint();
+      if (checkpoint != null && checkpoint.wasJustActivated() && level.isCompletion()) {
+        setChapterCompletion();
+      }
+      gameState = simulation.getState();
+      if (code != Simulation.CONTINUE) {
+        startExit(code);
+      }
+      accumulator -= step;
+    }
+    alpha = accumulator / step;
+  }
+
   /**
    * Draw the current game state to the canvas.
    */
   private void draw() {
+    FrameProfiler profiler = FrameProfiler.getInstance();
     canvas.clear();
 
     if (gameState != GameState.INTRO) {
+      level.interpolate(alpha);
+      profiler.begin(FrameProfiler.BACKGROUND);
       level.drawBackground(canvas);
+      profiler.end(FrameProfiler.BACKGROUND);
       if (level.isCompletion()) {
+        profiler.begin(FrameProfiler.STAGE);
         Shared.drawOverlay(0.2f);
         chapterStage.draw();
+        profiler.end(FrameProfiler.STAGE);
       }
+      profiler.begin(FrameProfiler.ENTITIES);
       level.drawEntities(canvas);
       if (debug) {
         level.drawDebug(canvas);
       }
+      profiler.end(FrameProfiler.ENTITIES);
 
       Player player = level.getPlayer();
       if (!exiting && player.isActive()) {
-        Vector2 delta = player.getPosition().scl(Shared.PPM).sub(canvas.getCameraPos()).scl(0.25f);
+        float follow = 1 - (float)Math.pow(1 - CAMERA_FOLLOW, frameDelta * 60);
+        Vector2 delta = player.getDrawPosition().scl(Shared.PPM).sub(canvas.getCameraPos()).scl(follow);
         float width = level.getWidth() * Shared.PPM;
         float height = level.getHeight() * Shared.PPM;
         canvas.moveCamera(canvas.getCameraPos().add(delta), width, height);
@@ -658,15 +723,46 @@ public class GameMode implements Screen {
         //  xOffset, yOffset - 6 * deltaOffset);
         // drawText(0, "Enemy Damage", Enemy.damage, Enemy.DAMAGE,
         //          xOffset, yOffset - 9 * deltaOffset);
+        BitmapFont devFont = Shared.getFont("game.dev.ttf");
+        devText.setLength(0);
+        devText.append("Fixtures/tick: +").append(tickFixturesCreated).append(" -").append(tickFixturesDestroyed);
+        canvas.drawText(devText, devFont, Color.BLACK, xOffset, yOffset - 6 * deltaOffset);
+        devText.setLength(0);
+        devText.append("Dormant entities: ").append(level.getDormantCount());
+        canvas.drawText(devText, devFont, Color.BLACK, xOffset, yOffset - 7 * deltaOffset);
+        devText.setLength(0);
+        devText.append("Drawn/culled: ").append(level.getDrawnCount()).append('/').append(level.getCulledCount());
+        canvas.drawText(devText, devFont, Color.BLACK, xOffset, yOffset - 8 * deltaOffset);
+        ParticleController particles = ParticleController.getInstance();
+        devText.setLength(0);
+        devText.append("Particle pool hits/misses: ").append(particles.getHits())
+          .append('/').append(particles.getMisses());
+        canvas.drawText(devText, devFont, Color.BLACK, xOffset, yOffset - 9 * deltaOffset);
+        if (--devStatsCountdown <= 0) {
+          profiler.computeStats();
+          devStatsCountdown = DEV_STATS_INTERVAL;
+        }
+        for (int i = 0; i < FrameProfiler.PHASE_COUNT; i++) {
+          devText.setLength(0);
+          devText.append(FrameProfiler.PHASE_NAMES[i]).append(" ms: ");
+          appendFixed(devText, profiler.getMin(i), false);
+          devText.append(" / ");
+          appendFixed(devText, profiler.getAvg(i), false);
+          devText.append(" / ");
+          appendFixed(devText, profiler.getP99(i), false);
+          canvas.drawText(devText, devFont, Color.BLACK, xOffset, yOffset - (10 + i) * deltaOffset);
+        }
         canvas.end();
       }
 
+      profiler.begin(FrameProfiler.STAGE);
       if (paused) {
         Shared.drawOverlay(0.4f);
         pauseStage.draw();
       } else {
         gameStage.draw();
       }
+      profiler.end(FrameProfiler.STAGE);
     }
   }
 
@@ -695,16 +791,42 @@ public class GameMode implements Screen {
         color = Color.BLACK;
       }
     }
-    String text =
-      "[" + num + "] " + name + ": " + new DecimalFormat("#.##").format(value);
-    canvas.drawText(text, Shared.getFont("game.dev.ttf"), color, x, y);
+    devText.setLength(0);
+    devText.append('[').append(num).append("] ").append(name).append(": ");
+    appendFixed(devText, value, true);
+    canvas.drawText(devText, Shared.getFont("game.dev.ttf"), color, x, y);
+  }
+
+  /**
+   * Appends the given value rounded to two decimal places, without allocating.
+   * @param builder the text buffer to append to
+   * @param value the value to append
+   * @param trim whether to drop trailing zeros after the decimal point
+   */
+  private static void appendFixed(StringBuilder builder, float value, boolean trim) {
+    long hundredths = Math.round(value * 100.0);
+    if (hundredths < 0) {
+      builder.append('-');
+      hundredths = -hundredths;
+    }
+    builder.append(hundredths / 100);
+    int fraction = (int)(hundredths % 100);
+    if (trim && fraction == 0) {
+      return;
+    }
+    builder.append('.').append((char)('0' + fraction / 10));
+    if (!trim || fraction % 10 != 0) {
+      builder.append((char)('0' + fraction % 10));
+    }
   }
 
   @Override
   public void render(float delta) {
     if (active) {
+      frameDelta = delta;
       update(delta);
       draw();
+      FrameProfiler.getInstance().endFrame();
     }
   }
 
@@ -739,6 +861,7 @@ public class GameMode implements Screen {
 
   @Override
   public void show() {
+    InputController.getInstance().clearPresses();
     initLevel();
     Gdx.input.setInputProcessor(gameStage);
     active = true;
@@ -765,6 +888,10 @@ public class GameMode implements Screen {
       world.dispose();
       world = null;
     }
+    if (level != null) {
+      level.dispose();
+    }
     level = null;
+    simulation = null;
   }
 }
@@ -10,6 +10,8 @@ public class InputController {
   private boolean debugPressed;
   /** Whether the dev mode input was entered */
   private boolean devModePressed;
+  /** Whether the profile dump input was entered */
+  private boolean profileDumpPressed;
   /** The devSelect input 0-9 */
   private int devSelect;
   /** The devChange increment/decrement input */
@@ -31,10 +33,27 @@ public class InputController {
   private boolean jumpHeld;
   /** Whether the attack button was pressed */
   private boolean attackPressed;
+  /** Whether the attack button was held */
+  private boolean attackHeld;
   /** Whether the confirm button was pressed */
   private boolean confirmPressed;
   /** Whether the reset button was pressed */
   private boolean resetPressed;
+  /** Whether the reset button was held */
+  private boolean resetHeld;
+
+  /** Whether every played level should be recorded */
+  private boolean recordLevels;
+  /** Recording being written, if any */
+  private InputRecording recording;
+  /** Recording being replayed, if any */
+  private InputRecording replay;
+  /** Current tick of the recording or replay */
+  private int tick;
+  /** First tick where the replay checksum did not match, or -1 */
+  private int desyncTick;
+  /** Whether replayed checksums are checked against the simulation */
+  private boolean verifyReplay;
 
   /** The singleton instance of the input controller */
   private static InputController controller = null;
@@ -68,6 +87,13 @@ public class InputController {
     return devModePressed;
   }
 
+  /**
+   * Returns whether the profile dump input was entered.
+   */
+  public boolean pressedProfileDump() {
+    return profileDumpPressed;
+  }
+
   /**
    * Returns the devSelect input.
    */
@@ -145,6 +171,13 @@ public class InputController {
     return attackPressed;
   }
 
+  /**
+   * Returns whether the player kept holding attack.
+   */
+  public boolean heldAttack() {
+    return attackHeld;
+  }
+
   /**
    * Returns whether the player pressed reset.
    */
@@ -152,8 +185,175 @@ public class InputController {
     return resetPressed;
   }
 
+  /**
+   * Returns whether the player kept holding reset.
+   */
+  public boolean heldReset() {
+    return resetHeld;
+  }
+
+  /**
+   * Sets whether every played level should be recorded.
+   */
+  public void setRecordLevels(boolean value) {
+    recordLevels = value;
+  }
+
+  /**
+   * Returns whether every played level should be recorded.
+   */
+  public boolean shouldRecordLevels() {
+    return recordLevels;
+  }
+
+  /**
+   * Starts recording gameplay input for the given level, one state per tick.
+   * @param chapter chapter index, or -1 if not a chapter level
+   * @param level level index within the chapter, or -1 if not a chapter level
+   */
+  public void startRecording(int chapter, int level) {
+    recording = new InputRecording(chapter, level);
+    tick = 0;
+  }
+
+  /**
+   * Stops recording and returns the finished recording, or null if none was active.
+   */
+  public InputRecording stopRecording() {
+    InputRecording finished = recording;
+    recording = null;
+    return finished;
+  }
+
+  /**
+   * Returns whether input is being recorded.
+   */
+  public boolean isRecording() {
+    return recording != null;
+  }
+
+  /**
+   * Starts feeding the given recording through this controller in place of
+   * live gameplay input. Menu inputs (exit, debug, dev mode) stay live.
+   */
+  public void startReplay(InputRecording replay) {
+    startReplay(replay, true);
+  }
+
+  /**
+   * Starts feeding the given recording through this controller in place of
+   * live gameplay input, optionally without checking its checksums.
+   * Used to drive the simulation with scripted input.
+   */
+  public void startReplay(InputRecording replay, boolean verify) {
+    this.replay = replay;
+    verifyReplay = verify;
+    tick = 0;
+    desyncTick = -1;
+  }
+
+  /**
+   * Stops the current replay, returning to live input.
+   */
+  public void stopReplay() {
+    replay = null;
+  }
+
+  /**
+   * Returns whether a recording is being replayed.
+   */
+  public boolean isReplaying() {
+    return replay != null;
+  }
+
+  /**
+   * Returns whether the current replay has run out of recorded ticks.
+   */
+  public boolean isReplayFinished() {
+    return replay != null && tick >= replay.getLength();
+  }
+
+  /**
+   * Returns the first tick where the replay diverged from the recording, or -1.
+   */
+  public int getDesyncTick() {
+    return desyncTick;
+  }
+
+  /**
+   * Prepares the gameplay input for the next simulation tick.
+   * During a replay, this loads the recorded state for the tick.
+   */
+  public void beginTick() {
+    if (replay != null) {
+      setState(replay.getState(tick));
+    }
+  }
+
+  /**
+   * Returns whether the checksum passed to endTick is used, which is only the
+   * case while recording or verifying a replay.
+   */
+  public boolean needsChecksum() {
+    return recording != null || (replay != null && verifyReplay);
+  }
+
+  /**
+   * Finishes a simulation tick, recording or verifying its input and
+   * checksum, then clears the consumed presses.
+   * @param checksum checksum of the simulation after the tick, or any value
+   *                 if no checksum is needed
+   */
+  public void endTick(int checksum) {
+    if (recording != null) {
+      recording.add(getState(), checksum);
+    }
+    if (replay != null && verifyReplay && tick < replay.getLength()
+        && desyncTick == -1 && replay.getChecksum(tick) != checksum) {
+      desyncTick = tick;
+      Gdx.app.error("InputController", "Replay desynced at tick " + tick);
+    }
+    tick++;
+    clearPresses();
+  }
+
+  /**
+   * Returns the current gameplay input as InputRecording state bits.
+   */
+  private int getState() {
+    int state = 0;
+    state |= leftPressed ? InputRecording.LEFT_PRESSED : 0;
+    state |= leftHeld ? InputRecording.LEFT_HELD : 0;
+    state |= rightPressed ? InputRecording.RIGHT_PRESSED : 0;
+    state |= rightHeld ? InputRecording.RIGHT_HELD : 0;
+    state |= jumpPressed ? InputRecording.JUMP_PRESSED : 0;
+    state |= jumpHeld ? InputRecording.JUMP_HELD : 0;
+    state |= attackPressed ? InputRecording.ATTACK_PRESSED : 0;
+    state |= attackHeld ? InputRecording.ATTACK_HELD : 0;
+    state |= resetPressed ? InputRecording.RESET_PRESSED : 0;
+    state |= resetHeld ? InputRecording.RESET_HELD : 0;
+    return state;
+  }
+
+  /**
+   * Sets the gameplay input from InputRecording state bits.
+   */
+  private void setState(int state) {
+    leftPressed = (state & InputRecording.LEFT_PRESSED) != 0;
+    leftHeld = (state & InputRecording.LEFT_HELD) != 0;
+    rightPressed = (state & InputRecording.RIGHT_PRESSED) != 0;
+    rightHeld = (state & InputRecording.RIGHT_HELD) != 0;
+    jumpPressed = (state & InputRecording.JUMP_PRESSED) != 0;
+    jumpHeld = (state & InputRecording.JUMP_HELD) != 0;
+    attackPressed = (state & InputRecording.ATTACK_PRESSED) != 0;
+    attackHeld = (state & InputRecording.ATTACK_HELD) != 0;
+    resetPressed = (state & InputRecording.RESET_PRESSED) != 0;
+    resetHeld = (state & InputRecording.RESET_HELD) != 0;
+  }
+
   /**
    * Reads the input from the player.
+   * During a replay, gameplay input comes from the recording instead.
    */
   public void readInput() {
     SaveController save = SaveController.getInstance();
@@ -162,9 +362,10 @@ public class InputController {
     exitPressed = Gdx.input.isKeyJustPressed(Input.Keys.ESCAPE);
     debugPressed = Gdx.input.isKeyJustPressed(Input.Keys.SLASH);
     devModePressed = Gdx.input.isKeyJustPressed(Input.Keys.PERIOD);
+    profileDumpPressed = Gdx.input.isKeyJustPressed(Input.Keys.COMMA);
 
     for (int i = 0; i < 10; i++) {
-      if (Gdx.input.isKeyJustPressed(Input.Keys.valueOf(i + ""))) {
+      if (Gdx.input.isKeyJustPressed(Input.Keys.NUM_0 + i)) {
         devSelect = i;
       }
     }
@@ -176,13 +377,33 @@ public class InputController {
       devChange -= 1;
     }
 
-    leftPressed = Gdx.input.isKeyJustPressed(save.getBoundKeycode(Shared.ACTION_LEFT));
+    if (replay != null) {
+      return;
+    }
+
+    // gameplay presses are latched until consumed by a simulation tick
+    leftPressed |= Gdx.input.isKeyJustPressed(save.getBoundKeycode(Shared.ACTION_LEFT));
     leftHeld = Gdx.input.isKeyPressed(save.getBoundKeycode(Shared.ACTION_LEFT));
-    rightPressed = Gdx.input.isKeyJustPressed(save.getBoundKeycode(Shared.ACTION_RIGHT));
+    rightPressed |= Gdx.input.isKeyJustPressed(save.getBoundKeycode(Shared.ACTION_RIGHT));
     rightHeld = Gdx.input.isKeyPressed(save.getBoundKeycode(Shared.ACTION_RIGHT));
-    attackPressed = Gdx.input.isKeyJustPressed(save.getBoundKeycode(Shared.ACTION_ATTACK));
-    jumpPressed = Gdx.input.isKeyJustPressed(save.getBoundKeycode(Shared.ACTION_JUMP));
+    attackPressed |= Gdx.input.isKeyJustPressed(save.getBoundKeycode(Shared.ACTION_ATTACK));
+    attackHeld = Gdx.input.isKeyPressed(save.getBoundKeycode(Shared.ACTION_ATTACK));
+    jumpPressed |= Gdx.input.isKeyJustPressed(save.getBoundKeycode(Shared.ACTION_JUMP));
     jumpHeld = Gdx.input.isKeyPressed(save.getBoundKeycode(Shared.ACTION_JUMP));
-    resetPressed = Gdx.input.isKeyJustPressed(save.getBoundKeycode(Shared.ACTION_RESET));
+    resetPressed |= Gdx.input.isKeyJustPressed(save.getBoundKeycode(Shared.ACTION_RESET));
+    resetHeld = Gdx.input.isKeyPressed(save.getBoundKeycode(Shared.ACTION_RESET));
+  }
+
+  /**
+   * Clears the latched gameplay presses (left, right, jump, attack, reset).
+   * Called once a simulation tick has consumed them, so that a press on a frame
+   * without a tick is not lost and a press on a frame with several ticks is not repeated.
+   */
+  public void clearPresses() {
+    leftPressed = false;
+    rightPressed = false;
+    jumpPressed = false;
+    attackPressed = false;
+    resetPressed = false;
   }
 }
@@ -0,0 +1,206 @@
+package com.glassboxgames.rubato;
+
+import java.io.*;
+import com.badlogic.gdx.files.*;
+import com.badlogic.gdx.utils.*;
+
+/**
+ * Per-tick gameplay input for one attempt at a level, with a checksum of the
+ * simulation after every tick for detecting desyncs on replay.
+ * Input states are stored delta-encoded, as the ticks on which they change.
+ */
+public class InputRecording {
+  /** Input state bits */
+  public static final int LEFT_PRESSED = 1;
+  public static final int LEFT_HELD = 1 << 1;
+  public static final int RIGHT_PRESSED = 1 << 2;
+  public static final int RIGHT_HELD = 1 << 3;
+  public static final int JUMP_PRESSED = 1 << 4;
+  public static final int JUMP_HELD = 1 << 5;
+  public static final int ATTACK_PRESSED = 1 << 6;
+  public static final int ATTACK_HELD = 1 << 7;
+  public static final int RESET_PRESSED = 1 << 8;
+  public static final int RESET_HELD = 1 << 9;
+
+  /** File extension for recordings */
+  public static final String EXTENSION = ".rbr";
+  /** File header identifying a recording ("RBRP") */
+  private static final int MAGIC = 0x52425250;
+  /** File format version */
+  private static final int VERSION = 1;
+
+  /** Chapter index of the recorded level, or -1 if not a chapter level */
+  private int chapter;
+  /** Level index within the chapter, or -1 if not a chapter level */
+  private int level;
+  /** Number of recorded ticks */
+  private int length;
+  /** Ticks on which the input state changed */
+  private IntArray changeTicks;
+  /** Input states starting at the corresponding change ticks */
+  private IntArray changeStates;
+  /** Simulation checksum after each tick */
+  private IntArray checksums;
+  /** Index of the last change looked up, for sequential access */
+  private int cursor;
+
+  /**
+   * Instantiates an empty recording for the given level.
+   * @param chapter chapter index, or -1 if not a chapter level
+   * @param level level index within the chapter, or -1 if not a chapter level
+   */
+  public InputRecording(int chapter, int level) {
+    this.chapter = chapter;
+    this.level = level;
+    changeTicks = new IntArray();
+    changeStates = new IntArray();
+    checksums = new IntArray();
+  }
+
+  /**
+   * Returns the chapter index of the recorded level.
+   */
+  public int getChapter() {
+    return chapter;
+  }
+
+  /**
+   * Returns the level index of the recorded level.
+   */
+  public int getLevel() {
+    return level;
+  }
+
+  /**
+   * Returns the number of recorded ticks.
+   */
+  public int getLength() {
+    return length;
+  }
+
+  /**
+   * Appends a tick to this recording.
+   * @param state the input state bits for the tick
+   * @param checksum the simulation checksum after the tick
+   */
+  public void add(int state, int checksum) {
+    if (changeStates.size == 0 || changeStates.peek() != state) {
+      changeTicks.add(length);
+      changeStates.add(state);
+    }
+    checksums.add(checksum);
+    length++;
+  }
+
+  /**
+   * Returns the input state bits for the given tick.
+   * Fastest when ticks are read in increasing order.
+   */
+  public int getState(int tick) {
+    if (tick < 0 || tick >= length) {
+      return 0;
+    }
+    if (cursor >= changeTicks.size || changeTicks.get(cursor) > tick) {
+      cursor = 0;
+    }
+    while (cursor + 1 < changeTicks.size && changeTicks.get(cursor + 1) <= tick) {
+      cursor++;
+    }
+    return changeStates.get(cursor);
+  }
+
+  /**
+   * Returns the simulation checksum recorded after the given tick.
+   */
+  public int getChecksum(int tick) {
+    return checksums.get(tick);
+  }
+
+  /**
+   * Writes this recording to the given file.
+   */
+  public void write(FileHandle file) {
+    DataOutputStream out = null;
+    try {
+      out = new DataOutputStream(new BufferedOutputStream(file.write(false)));
+      out.writeInt(MAGIC);
+      out.writeByte(VERSION);
+      out.writeInt(chapter);
+      out.writeInt(level);
+      writeVarInt(out, length);
+      writeVarInt(out, changeTicks.size);
+      int prev = 0;
+      for (int i = 0; i < changeTicks.size; i++) {
+        writeVarInt(out, changeTicks.get(i) - prev);
+        writeVarInt(out, changeStates.get(i));
+        prev = changeTicks.get(i);
+      }
+      // Checksums hash the exact float bits of every entity position, so any
+      // movement changes nearly all of their bits. Their deltas would take
+      // about five bytes as varints, more than the four written raw.
+      for (int i = 0; i < length; i++) {
+        out.writeInt(checksums.get(i));
+      }
+    } catch (IOException e) {
+      throw new GdxRuntimeException("Error writing input recording " + file, e);
+    } finally {
+      StreamUtils.closeQuietly(out);
+    }
+  }
+
+  /**
+   * Reads a recording from the given file.
+   */
+  public static InputRecording read(FileHandle file) {
+    DataInputStream in = null;
+    try {
+      in = new DataInputStream(new BufferedInputStream(file.read()));
+      if (in.readInt() != MAGIC || in.readByte() != VERSION) {
+        throw new GdxRuntimeException("Not a supported input recording: " + file);
+      }
+      InputRecording recording = new InputRecording(in.readInt(), in.readInt());
+      recording.length = readVarInt(in);
+      int changes = readVarInt(in);
+      int tick = 0;
+      for (int i = 0; i < changes; i++) {
+        tick += readVarInt(in);
+        recording.changeTicks.add(tick);
+        recording.changeStates.add(readVarInt(in));
+      }
+      for (int i = 0; i < recording.length; i++) {
+        recording.checksums.add(in.readInt());
+      }
+      return recording;
+    } catch (IOException e) {
+      throw new GdxRuntimeException("Error reading input recording " + file, e);
+    } finally {
+      StreamUtils.closeQuietly(in);
+    }
+  }
+
+  /**
+   * Writes a non-negative int in 7-bit groups.
+   */
+  private static void writeVarInt(DataOutputStream out, int value) throws IOException {
+    while ((value & ~0x7f) != 0) {
+      out.writeByte((value & 0x7f) | 0x80);
+      value >>>= 7;
+    }
+    out.writeByte(value);
+  }
+
+  /**
+   * Reads a non-negative int written by writeVarInt.
+   */
+  private static int readVarInt(DataInputStream in) throws IOException {
+    int value = 0;
+    int shift = 0;
+    int b;
+    do {
+      b = in.readUnsignedByte();
+      value |= (b & 0x7f) << shift;
+      shift += 7;
+    } while ((b & 0x80) != 0);
+    return value;
+  }
+}
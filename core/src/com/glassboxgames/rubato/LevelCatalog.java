@@ -0,0 +1,227 @@
+package com.glassboxgames.rubato;
+
+import java.util.concurrent.*;
+import com.badlogic.gdx.*;
+import com.badlogic.gdx.utils.*;
+import com.glassboxgames.rubato.serialize.*;
+
+/**
+ * Singleton catalog of the chapter levels. Only the chapter index is read at
+ * startup; level files are parsed on demand or prefetched on worker threads,
+ * and the most recently used levels are kept in a bounded cache. The catalog
+ * itself must only be used from one thread.
+ */
+public class LevelCatalog {
+  /** Maximum number of parsed or pending levels kept in the cache */
+  public static final int CACHE_SIZE = 8;
+  /** Number of worker threads for prefetching */
+  private static final int WORKER_COUNT =
+    Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() - 1));
+
+  /** Short names of the chapters, in order */
+  private Array<String> chapterNames;
+  /** Paths of the level files, ordered by chapter */
+  private Array<Array<String>> levelPaths;
+  /** Parsed or pending levels by path, least recently used first */
+  private OrderedMap<String, Future<LevelData>> cache;
+  /** Worker pool for prefetching, created on first use */
+  private ExecutorService workers;
+
+  /** JSON parser of each thread, since parsers are not thread-safe */
+  private static final ThreadLocal<Json> parsers = new ThreadLocal<Json>() {
+    @Override
+    protected Json initialValue() {
+      return new Json();
+    }
+  };
+
+  /** The singleton instance of the catalog */
+  private static LevelCatalog catalog = null;
+
+  /**
+   * Returns the singleton instance of the catalog.
+   */
+  public static LevelCatalog getInstance() {
+    if (catalog == null) {
+      catalog = new LevelCatalog();
+    }
+    return catalog;
+  }
+
+  /**
+   * Creates the catalog from the chapter index. Only used to create the singleton.
+   */
+  private LevelCatalog() {
+    chapterNames = new Array<String>();
+    levelPaths = new Array<Array<String>>();
+    cache = new OrderedMap<String, Future<LevelData>>();
+    Array<ChapterData> chapters = parsers.get().fromJson(Array.class, ChapterData.class,
+                                                         Gdx.files.internal(Shared.CHAPTERS_FILE));
+    for (ChapterData chapter : chapters) {
+      chapterNames.add(chapter.key);
+      levelPaths.add(chapter.maps);
+    }
+  }
+
+  /**
+   * Returns the short names of the chapters, in order.
+   */
+  public Array<String> getChapterNames() {
+    return chapterNames;
+  }
+
+  /**
+   * Returns the number of chapters.
+   */
+  public int getChapterCount() {
+    return levelPaths.size;
+  }
+
+  /**
+   * Returns the number of levels in the given chapter.
+   */
+  public int getLevelCount(int chapter) {
+    return levelPaths.get(chapter).size;
+  }
+
+  /**
+   * Returns the path of the given level file.
+   */
+  public String getPath(int chapter, int level) {
+    return levelPaths.get(chapter).get(level);
+  }
+
+  /**
+   * Starts parsing the given level on a worker thread, unless it is already
+   * cached, and returns its pending result. Out of range levels are ignored.
+   * @param chapter chapter index
+   * @param level level index within the chapter
+   * @return the pending level, or null if out of range
+   */
+  public Future<LevelData> prefetch(int chapter, int level) {
+    if (chapter < 0 || chapter >= getChapterCount() || level < 0 || level >= getLevelCount(chapter)) {
+      return null;
+    }
+    final String path = getPath(chapter, level);
+    Future<LevelData> future = cache.remove(path);
+    if (future == null) {
+      if (workers == null) {
+        workers = Executors.newFixedThreadPool(WORKER_COUNT, new ThreadFactory() {
+          @Override
+          public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "LevelCatalog");
+            thread.setDaemon(true);
+            return thread;
+          }
+        });
+      }
+      future = workers.submit(createTask(path));
+    }
+    cache(path, future);
+    return future;
+  }
+
+  /**
+   * Returns the given level, waiting for it if it is being prefetched and
+   * parsing it on the calling thread if it is not cached.
+   * @param chapter chapter index
+   * @param level level index within the chapter
+   */
+  public LevelData get(int chapter, int level) {
+    String path = getPath(chapter, level);
+    Future<LevelData> future = cache.remove(path);
+    if (future == null) {
+      FutureTask<LevelData> task = new FutureTask<LevelData>(createTask(path));
+      task.run();
+      future = task;
+    }
+    cache(path, future);
+    try {
+      return future.get();
+    } catch (ExecutionException e) {
+      cache.remove(path);
+      throw new RuntimeException("Could not load level " + path, e.getCause());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException("Interrupted while loading level " + path, e);
+    }
+  }
+
+  /**
+   * Returns the chapter index of the given cached level, or -1 if not found.
+   */
+  public int getChapterIndex(LevelData data) {
+    String path = findPath(data);
+    for (int i = 0; path != null && i < levelPaths.size; i++) {
+      if (levelPaths.get(i).contains(path, false)) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Returns the index within its chapter of the given cached level, or -1 if not found.
+   */
+  public int getLevelIndex(LevelData data) {
+    String path = findPath(data);
+    for (int i = 0; path != null && i < levelPaths.size; i++) {
+      int index = levelPaths.get(i).indexOf(path, false);
+      if (index != -1) {
+        return index;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Returns the path of the given level if it is in the cache, or null otherwise.
+   */
+  private String findPath(LevelData data) {
+    for (ObjectMap.Entry<String, Future<LevelData>> entry : cache.entries()) {
+      Future<LevelData> future = entry.value;
+      try {
+        if (future.isDone() && !future.isCancelled() && future.get() == data) {
+          return entry.key;
+        }
+      } catch (Exception e) {
+        // failed levels cannot match
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Stores the given pending level as the most recently used, evicting the
+   * least recently used levels beyond the cache size.
+   */
+  private void cache(String path, Future<LevelData> future) {
+    cache.put(path, future);
+    while (cache.size > CACHE_SIZE) {
+      cache.remove(cache.orderedKeys().first());
+    }
+  }
+
+  /**
+   * Returns a task parsing the level file at the given path.
+   */
+  private static Callable<LevelData> createTask(final String path) {
+    return new Callable<LevelData>() {
+      @Override
+      public LevelData call() {
+        return parsers.get().fromJson(LevelData.class, Gdx.files.internal(path));
+      }
+    };
+  }
+
+  /**
+   * Stops the worker threads. Pending prefetches are abandoned.
+   */
+  public void dispose() {
+    if (workers != null) {
+      workers.shutdownNow();
+      workers = null;
+    }
+    cache.clear();
+  }
+}
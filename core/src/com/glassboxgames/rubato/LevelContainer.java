@@ -1,5 +1,6 @@
 package com.glassboxgames.rubato;
 
+import java.util.Comparator;
 import com.badlogic.gdx.*;
 import com.badlogic.gdx.assets.*;
 import com.badlogic.gdx.graphics.*;
@@ -18,13 +19,28 @@ import com.glassboxgames.util.*;
  * This class represents everything inside a single level.
  */
 public class LevelContainer {
-  /** Ripple shader */
-  private static final ShaderProgram RIPPLE_SHADER =
-    new ShaderProgram(Gdx.files.internal("Shaders/ripple.vsr"), Gdx.files.internal("Shaders/ripple.fsr"));
+  /** Ripple shader, compiled on first draw */
+  private static ShaderProgram rippleShader = null;
   /** Width of the wall fixture */
   private static final float WALL_WIDTH = 0.5f;
+  /** Bottom boundary */
+  private static final float Y_BOUND = 0.3f;
   /** Distance between player and tooltip to trigger drawing */
   private static final float TOOLTIP_DISTANCE = 3.5f;
+  /** Half width of the camera view in world units */
+  public static final float VIEW_HALF_WIDTH = 8f;
+  /** Half height of the camera view in world units */
+  public static final float VIEW_HALF_HEIGHT = 4.5f;
+  /** Default distance beyond the camera view within which entities are simulated */
+  public static final float DEFAULT_ACTIVE_MARGIN = 8f;
+  /** Extra distance past the margin an entity must be before it goes dormant */
+  private static final float DORMANT_HYSTERESIS = 2f;
+  /** Extra margin for platforms, so that active enemies never reach dormant platforms */
+  private static final float PLATFORM_PADDING = 2f;
+  /** Largest gap between platform colliders that are merged together */
+  private static final float MERGE_EPSILON = 0.01f;
+  /** Side length of a cell of the platform index, in pixels */
+  private static final float INDEX_CELL_SIZE = 512f;
 
   /** The dimensions of the level */
   private float width, height;
@@ -38,6 +54,30 @@ public class LevelContainer {
   private Array<Enemy> enemies;
   /** The platforms in this level */
   private Array<Platform> platforms;
+  /** Merged colliders of the solid platform tiles in this level */
+  private Array<PlatformGroup> platformGroups;
+  /** Cached render layer of the static platforms in this level */
+  private PlatformLayer platformLayer;
+  /** Spatial index of the platforms by drawn extents, built with the graphics */
+  private SpatialIndex<Platform> platformIndex;
+  /** Spatial index of the tooltips by drawn extents, built with the graphics */
+  private SpatialIndex<Tooltip> tooltipIndex;
+  /** Spatial index of the platform groups by collider bounds, built with the graphics */
+  private SpatialIndex<PlatformGroup> groupIndex;
+  /** Cache for the platforms visible to the camera */
+  private Array<Platform> visiblePlatforms;
+  /** Cache for the tooltips visible to the camera in debug mode */
+  private Array<Tooltip> visibleTooltips;
+  /** Cache for the platform groups visible to the camera in debug mode */
+  private Array<PlatformGroup> visibleGroups;
+  /** Cache for the rectangle visible to the camera */
+  private Rectangle view;
+  /** Number of entities drawn and culled in the last frame */
+  private int drawnCount, culledCount;
+  /** Caches for the entities removed and added during an update */
+  private Array<Enemy> removedEnemies, addedEnemies;
+  /** Cache for the platforms removed during an update */
+  private Array<Platform> removedPlatforms;
   /** The checkpoint in this level */
   private Checkpoint checkpoint;
   /** The optional altar in this level */
@@ -51,6 +91,10 @@ public class LevelContainer {
   private Body leftWall, rightWall;
   /** Whether this level is the last level in its chapter */
   private boolean completion;
+  /** Distance beyond the camera view within which entities are simulated */
+  private float activeMargin;
+  /** Center of the active region, following the player */
+  private float regionX, regionY;
 
   /**
    * Instantiates a LevelContainer from a LevelData object.
@@ -76,6 +120,15 @@ public class LevelContainer {
     for (PlatformData platformData : data.platforms) {
       platforms.add(createPlatform(platformData));
     }
+    platformGroups = mergePlatforms(platforms);
+    platformLayer = new PlatformLayer();
+    visiblePlatforms = new Array<Platform>();
+    visibleTooltips = new Array<Tooltip>();
+    visibleGroups = new Array<PlatformGroup>();
+    view = new Rectangle();
+    removedEnemies = new Array<Enemy>();
+    addedEnemies = new Array<Enemy>();
+    removedPlatforms = new Array<Platform>();
     checkpoint = data.checkpoint != null ? new Checkpoint(data.checkpoint.x, data.checkpoint.y) : null;
     altar = data.altar != null ? new Altar(data.altar.x, data.altar.y) : null;
     if (checkpoint == null && altar == null) {
@@ -96,6 +149,7 @@ public class LevelContainer {
     }
     wallDef = new BodyDef();
     wallDef.type = BodyDef.BodyType.StaticBody;
+    activeMargin = DEFAULT_ACTIVE_MARGIN;
   }
 
   /**
@@ -134,6 +188,132 @@ public class LevelContainer {
     }
   }
 
+  /**
+   * Rectangle covered by platform colliders during merging.
+   */
+  private static class MergeRect {
+    public float x0, y0, x1, y1;
+    public int type;
+
+    /**
+     * Returns the given coordinate snapped to the merge tolerance, for grouping.
+     */
+    public static int key(float value) {
+      return Math.round(value / MERGE_EPSILON);
+    }
+  }
+
+  /**
+   * Stores the bounds of the given platform's collider into the given rectangle.
+   * Returns false if the collider is not a single axis-aligned box.
+   */
+  private static boolean getColliderBounds(Platform platform, MergeRect rect) {
+    Array<FixtureDef> defs = Platform.states.get(platform.getType()).getHurtboxDefs(0, 1);
+    if (defs.size != 1 || !(defs.first().shape instanceof PolygonShape)) {
+      return false;
+    }
+    PolygonShape shape = (PolygonShape)defs.first().shape;
+    if (shape.getVertexCount() != 4) {
+      return false;
+    }
+    Vector2 vertex = new Vector2();
+    shape.getVertex(0, vertex);
+    float x0 = vertex.x, y0 = vertex.y, x1 = vertex.x, y1 = vertex.y;
+    for (int i = 1; i < 4; i++) {
+      shape.getVertex(i, vertex);
+      x0 = Math.min(x0, vertex.x);
+      y0 = Math.min(y0, vertex.y);
+      x1 = Math.max(x1, vertex.x);
+      y1 = Math.max(y1, vertex.y);
+    }
+    for (int i = 0; i < 4; i++) {
+      shape.getVertex(i, vertex);
+      if (Math.min(Math.abs(vertex.x - x0), Math.abs(vertex.x - x1)) > MERGE_EPSILON
+          || Math.min(Math.abs(vertex.y - y0), Math.abs(vertex.y - y1)) > MERGE_EPSILON) {
+        return false;
+      }
+    }
+    Vector2 pos = platform.getPosition();
+    rect.x0 = pos.x + x0;
+    rect.y0 = pos.y + y0;
+    rect.x1 = pos.x + x1;
+    rect.y1 = pos.y + y1;
+    rect.type = platform.getType();
+    return true;
+  }
+
+  /**
+   * Merges the colliders of touching solid platform tiles into rectangular
+   * platform groups, first along rows and then along columns. The covered area
+   * is unchanged. Merged tiles are marked so that they do not create bodies;
+   * spikes and crumbling platforms are left alone.
+   * @param platforms the platforms of the level
+   * @return the merged colliders
+   */
+  private static Array<PlatformGroup> mergePlatforms(Array<Platform> platforms) {
+    Array<MergeRect> rects = new Array<MergeRect>();
+    for (Platform platform : platforms) {
+      MergeRect rect = new MergeRect();
+      if (platform.isMergeable() && getColliderBounds(platform, rect)) {
+        platform.setMerged(true);
+        rects.add(rect);
+      }
+    }
+
+    rects.sort(new Comparator<MergeRect>() {
+      @Override
+      public int compare(MergeRect a, MergeRect b) {
+        int c = Integer.compare(MergeRect.key(a.y0), MergeRect.key(b.y0));
+        if (c == 0) {
+          c = Integer.compare(MergeRect.key(a.y1), MergeRect.key(b.y1));
+        }
+        return c != 0 ? c : Float.compare(a.x0, b.x0);
+      }
+    });
+    Array<MergeRect> rows = new Array<MergeRect>();
+    for (MergeRect rect : rects) {
+      MergeRect last = rows.size > 0 ? rows.peek() : null;
+      if (last != null
+          && MergeRect.key(last.y0) == MergeRect.key(rect.y0)
+          && MergeRect.key(last.y1) == MergeRect.key(rect.y1)
+          && rect.x0 <= last.x1 + MERGE_EPSILON) {
+        last.x1 = Math.max(last.x1, rect.x1);
+      } else {
+        rows.add(rect);
+      }
+    }
+
+    rows.sort(new Comparator<MergeRect>() {
+      @Override
+      public int compare(MergeRect a, MergeRect b) {
+        int c = Integer.compare(MergeRect.key(a.x0), MergeRect.key(b.x0));
+        if (c == 0) {
+          c = Integer.compare(MergeRect.key(a.x1), MergeRect.key(b.x1));
+        }
+        return c != 0 ? c : Float.compare(a.y0, b.y0);
+      }
+    });
+    Array<PlatformGroup> groups = new Array<PlatformGroup>();
+    MergeRect last = null;
+    for (MergeRect rect : rows) {
+      if (last != null
+          && MergeRect.key(last.x0) == MergeRect.key(rect.x0)
+          && MergeRect.key(last.x1) == MergeRect.key(rect.x1)
+          && rect.y0 <= last.y1 + MERGE_EPSILON) {
+        last.y1 = Math.max(last.y1, rect.y1);
+      } else {
+        if (last != null) {
+          groups.add(new PlatformGroup(last.x0, last.y0, last.x1, last.y1, last.type));
+        }
+        last = rect;
+      }
+    }
+    if (last != null) {
+      groups.add(new PlatformGroup(last.x0, last.y0, last.x1, last.y1, last.type));
+    }
+    return groups;
+  }
+
   /**
    * Creates and returns a tooltip from a data object.
    */
@@ -160,6 +340,9 @@ public class LevelContainer {
     for (Platform platform : platforms) {
       platform.activatePhysics(world);
     }
+    for (PlatformGroup group : platformGroups) {
+      group.activatePhysics(world);
+    }
     if (checkpoint != null) {
       checkpoint.activatePhysics(world);
     }
@@ -171,6 +354,8 @@ public class LevelContainer {
     }
     FixtureDef def = new FixtureDef();
     def.friction = 0;
+    def.filter.categoryBits = CollisionFilter.WALL;
+    def.filter.maskBits = CollisionFilter.getMask(CollisionFilter.WALL);
     PolygonShape shape = new PolygonShape();
     shape.setAsBox(WALL_WIDTH / 2, height);
     def.shape = shape;
@@ -193,6 +378,9 @@ public class LevelContainer {
     for (Platform platform : platforms) {
       platform.deactivatePhysics(world);
     }
+    for (PlatformGroup group : platformGroups) {
+      group.deactivatePhysics(world);
+    }
     if (checkpoint != null) {
       checkpoint.deactivatePhysics(world);
     }
@@ -233,6 +421,31 @@ public class LevelContainer {
     return chapter;
   }
 
+  /**
+   * Returns the states used by this level: those of every entity type present,
+   * with the platform states limited to the biomes present.
+   */
+  public ObjectSet<State> getUsedStates() {
+    ObjectSet<State> used = new ObjectSet<State>();
+    player.addUsedStates(used);
+    for (Enemy enemy : enemies) {
+      enemy.addUsedStates(used);
+    }
+    for (Platform platform : platforms) {
+      platform.addUsedStates(used);
+    }
+    for (Tooltip tooltip : tooltips) {
+      tooltip.addUsedStates(used);
+    }
+    if (checkpoint != null) {
+      checkpoint.addUsedStates(used);
+    }
+    if (altar != null) {
+      altar.addUsedStates(used);
+    }
+    return used;
+  }
+
   /**
    * Returns the player object for this level.
    */
@@ -282,6 +495,88 @@ public class LevelContainer {
     return tooltips;
   }
 
+  /**
+   * Sets the distance beyond the camera view within which entities are simulated.
+   * Entities further away are made dormant. Use infinity to simulate everything.
+   */
+  public void setActiveMargin(float margin) {
+    activeMargin = margin;
+  }
+
+  /**
+   * Returns the distance beyond the camera view within which entities are simulated.
+   */
+  public float getActiveMargin() {
+    return activeMargin;
+  }
+
+  /**
+   * Returns whether the given entity lies within the given margin of the camera view
+   * around the player.
+   */
+  private boolean isNear(Entity entity, float margin) {
+    Vector2 pos = entity.getPosition();
+    return Math.abs(pos.x - regionX) <= VIEW_HALF_WIDTH + margin
+      && Math.abs(pos.y - regionY) <= VIEW_HALF_HEIGHT + margin;
+  }
+
+  /**
+   * Wakes the given entity if it is within the margin, or makes it dormant if it
+   * is beyond the margin plus the hysteresis distance.
+   */
+  private void updateDormancy(Entity entity, float margin) {
+    if (entity.isDormant()) {
+      if (isNear(entity, margin)) {
+        entity.setDormant(false);
+      }
+    } else if (!isNear(entity, margin + DORMANT_HYSTERESIS)) {
+      entity.setDormant(true);
+    }
+  }
+
+  /**
+   * Recenters the active region on the player and updates which enemies,
+   * platforms and tooltips are dormant. The checkpoint and altar are always active.
+   */
+  private void updateRegion() {
+    Vector2 pos = player.getPosition();
+    regionX = pos.x;
+    regionY = pos.y;
+    for (Enemy enemy : enemies) {
+      updateDormancy(enemy, activeMargin);
+    }
+    float platformMargin = activeMargin + DORMANT_HYSTERESIS + PLATFORM_PADDING;
+    for (Platform platform : platforms) {
+      updateDormancy(platform, platformMargin);
+    }
+    for (Tooltip tooltip : tooltips) {
+      updateDormancy(tooltip, activeMargin);
+    }
+  }
+
+  /**
+   * Returns the number of dormant entities in this level.
+   */
+  public int getDormantCount() {
+    int count = 0;
+    for (Enemy enemy : enemies) {
+      if (enemy.isDormant()) {
+        count++;
+      }
+    }
+    for (Platform platform : platforms) {
+      if (platform.isDormant()) {
+        count++;
+      }
+    }
+    for (Tooltip tooltip : tooltips) {
+      if (tooltip.isDormant()) {
+        count++;
+      }
+    }
+    return count;
+  }
+
   /**
    * Removes the right wall in this level.
    */
@@ -289,26 +584,227 @@ public class LevelContainer {
     rightWall.setActive(false);
   }
 
+  /**
+   * Applies one tick of player input and updates the player.
+   * The player must be active.
+   * @param input the input controller to read from
+   * @param delta length of the tick in seconds
+   */
+  public void updatePlayer(InputController input, float delta) {
+    if (input.pressedReset() || player.getPosition().y < Y_BOUND) {
+      player.setAlive(false);
+    }
+
+    int horizontal = 0;
+    if (input.heldLeft()) {
+      horizontal -= 1;
+    }
+    if (input.heldRight()) {
+      horizontal += 1;
+    }
+
+    player.setInput(horizontal);
+    player.tryFace();
+
+    if (input.pressedJump()) {
+      player.tryJump();
+    } else if (input.heldJump()) {
+      player.tryExtendJump();
+    }
+
+    if (input.pressedAttack()) {
+      player.tryAttack();
+    }
+
+    player.update(delta);
+  }
+
+  /**
+   * Updates every non-player entity in this level by one tick, adding spawned
+   * enemies to and removing finished enemies and platforms from the world.
+   * Entities outside the active region around the player are left dormant.
+   * @param world the Box2D world
+   * @param delta length of the tick in seconds
+   */
+  public void update(World world, float delta) {
+    updateRegion();
+
+    FrameProfiler profiler = FrameProfiler.getInstance();
+    profiler.begin(FrameProfiler.ENEMIES);
+    removedEnemies.clear();
+    addedEnemies.clear();
+    for (Enemy enemy : enemies) {
+      if (enemy.shouldRemove()) {
+        enemy.deactivatePhysics(world);
+        removedEnemies.add(enemy);
+      } else if (!enemy.isDormant()) {
+        enemy.update(delta);
+        if (enemy instanceof Wisp) {
+          Array<Enemy> spawned = ((Wisp) enemy).getSpawned();
+          for (Enemy spawn : spawned) {
+            spawn.activatePhysics(world);
+            addedEnemies.add(spawn);
+          }
+          spawned.clear();
+        }
+      }
+    }
+    enemies.removeAll(removedEnemies, true);
+    enemies.addAll(addedEnemies);
+    profiler.end(FrameProfiler.ENEMIES);
+
+    profiler.begin(FrameProfiler.PLATFORMS);
+    removedPlatforms.clear();
+    for (Platform platform : platforms) {
+      if (platform.shouldRemove()) {
+        platform.deactivatePhysics(world);
+        removedPlatforms.add(platform);
+        if (platformIndex != null) {
+          platformIndex.remove(platform);
+        }
+      } else if (!platform.isDormant()) {
+        platform.update(delta);
+      }
+    }
+    platforms.removeAll(removedPlatforms, true);
+    profiler.end(FrameProfiler.PLATFORMS);
+
+    if (checkpoint != null) {
+      checkpoint.update(delta);
+      if (checkpoint.wasJustActivated()) {
+        removeRightWall();
+      }
+    }
+    if (altar != null) {
+      altar.update(delta);
+    }
+    for (Tooltip tooltip : tooltips) {
+      if (!tooltip.isDormant()) {
+        tooltip.update(delta);
+      }
+    }
+  }
+
+  /**
+   * Syncs the colliders of every non-dormant entity in this level to their current states.
+   */
+  public void sync() {
+    if (player.isActive()) {
+      player.sync();
+    }
+    for (Enemy enemy : enemies) {
+      if (!enemy.isDormant()) {
+        enemy.sync();
+      }
+    }
+    for (Platform platform : platforms) {
+      if (!platform.isDormant()) {
+        platform.sync();
+      }
+    }
+    if (checkpoint != null) {
+      checkpoint.sync();
+    }
+    if (altar != null) {
+      altar.sync();
+    }
+    for (Tooltip tooltip : tooltips) {
+      if (!tooltip.isDormant()) {
+        tooltip.sync();
+      }
+    }
+  }
+
+  /**
+   * Returns a checksum of the player and enemy positions, for detecting replay desyncs.
+   */
+  public int getChecksum() {
+    int hash = hashPosition(17, player);
+    for (Enemy enemy : enemies) {
+      hash = hashPosition(hash, enemy);
+    }
+    return hash;
+  }
+
+  /**
+   * Combines the given hash with the exact position of the given entity.
+   */
+  private static int hashPosition(int hash, Entity entity) {
+    Vector2 pos = entity.getPosition();
+    hash = 31 * hash + Float.floatToIntBits(pos.x);
+    return 31 * hash + Float.floatToIntBits(pos.y);
+  }
+
+  /**
+   * Records the current positions of all entities at the start of a simulation tick.
+   */
+  public void storePositions() {
+    player.storePosition();
+    for (Enemy enemy : enemies) {
+      enemy.storePosition();
+    }
+    for (Platform platform : platforms) {
+      platform.storePosition();
+    }
+    if (checkpoint != null) {
+      checkpoint.storePosition();
+    }
+    if (altar != null) {
+      altar.storePosition();
+    }
+    for (Tooltip tooltip : tooltips) {
+      tooltip.storePosition();
+    }
+  }
+
+  /**
+   * Interpolates the draw positions of all entities between the last two simulation ticks.
+   * Should be called once per frame before drawing.
+   * @param alpha fraction of a tick elapsed since the last tick (0 to 1)
+   */
+  public void interpolate(float alpha) {
+    player.interpolate(alpha);
+    for (Enemy enemy : enemies) {
+      enemy.interpolate(alpha);
+    }
+    for (Platform platform : platforms) {
+      platform.interpolate(alpha);
+    }
+    if (checkpoint != null) {
+      checkpoint.interpolate(alpha);
+    }
+    if (altar != null) {
+      altar.interpolate(alpha);
+    }
+    for (Tooltip tooltip : tooltips) {
+      tooltip.interpolate(alpha);
+    }
+  }
+
   /**
    * Activates the ripple shader for this level.
    */
   private void setRippleShader(GameCanvas canvas) {
     if (!completion && altar == null) {
-      RIPPLE_SHADER.begin();
-      RIPPLE_SHADER.setUniformf("u_max_length", width * Shared.PPM);
-      RIPPLE_SHADER.setUniformf("u_adagio",
-                                new Vector2(Shared.PPM * player.getPosition().x
-                                            - canvas.getCameraPos().x + canvas.getWidth() / 2,
-                                            Shared.PPM * player.getPosition().y
-                                            - canvas.getCameraPos().y + canvas.getHeight() / 2));
-      RIPPLE_SHADER.setUniformf("u_checkpoint",
-                                new Vector2(Shared.PPM * checkpoint.getPosition().x
-                                            - canvas.getCameraPos().x + canvas.getWidth() / 2,
-                                            Shared.PPM * checkpoint.getPosition().y
-                                            - canvas.getCameraPos().y + canvas.getHeight() / 2));
-      RIPPLE_SHADER.setUniformf("u_frame", checkpoint.isActivated() ? checkpoint.getInternalCount() : 0);
-      RIPPLE_SHADER.end();
-      canvas.setShader(RIPPLE_SHADER);
+      if (rippleShader == null) {
+        rippleShader = new ShaderProgram(Gdx.files.internal("Shaders/ripple.vsr"),
+                                         Gdx.files.internal("Shaders/ripple.fsr"));
+      }
+      rippleShader.begin();
+      rippleShader.setUniformf("u_max_length", width * Shared.PPM);
+      rippleShader.setUniformf("u_adagio",
+                               Shared.PPM * player.getDrawPosition().x
+                               - canvas.getCameraPos().x + canvas.getWidth() / 2,
+                               Shared.PPM * player.getDrawPosition().y
+                               - canvas.getCameraPos().y + canvas.getHeight() / 2);
+      rippleShader.setUniformf("u_checkpoint",
+                               Shared.PPM * checkpoint.getPosition().x
+                               - canvas.getCameraPos().x + canvas.getWidth() / 2,
+                               Shared.PPM * checkpoint.getPosition().y
+                               - canvas.getCameraPos().y + canvas.getHeight() / 2);
+      rippleShader.setUniformf("u_frame", checkpoint.isActivated() ? checkpoint.getInternalCount() : 0);
+      rippleShader.end();
+      canvas.setShader(rippleShader);
     }
   }
 
@@ -325,58 +821,158 @@ public class LevelContainer {
   }
 
   /**
-   * Draws this level's entities to the given canvas.
+   * Draws this level's entities to the given canvas at their interpolated positions.
    * @param canvas the canvas to draw on
    */
   public void drawEntities(GameCanvas canvas) {
+    queryVisiblePlatforms(canvas);
+    int total = platforms.size + enemies.size + tooltips.size;
+    int drawn = visiblePlatforms.size;
     canvas.begin();
     setRippleShader(canvas);
-    for (Platform platform : platforms) {
-      platform.draw(canvas);
+    platformLayer.draw(canvas, view);
+    for (Platform platform : visiblePlatforms) {
+      if (!PlatformLayer.isCached(platform)) {
+        platform.draw(canvas);
+      }
     }
     canvas.removeShader();
     if (checkpoint != null) {
-      checkpoint.draw(canvas);
+      total++;
+      if (checkpoint.isVisible(view)) {
+        checkpoint.draw(canvas);
+        drawn++;
+      }
     }
     if (altar != null) {
-      altar.draw(canvas);
+      total++;
+      if (altar.isVisible(view)) {
+        altar.draw(canvas);
+        drawn++;
+      }
     }
     for (Enemy enemy : enemies) {
-      enemy.draw(canvas);
+      if (enemy.isVisible(view)) {
+        enemy.draw(canvas);
+        drawn++;
+      }
     }
     for (Tooltip tooltip : tooltips) {
       SaveController save = SaveController.getInstance();
-      if (save.isDefaultBinding(tooltip.getAction())) {
-        tooltip.draw(canvas);
+      if (tooltip.isVisible(view)) {
+        drawn++;
+        if (save.isDefaultBinding(tooltip.getAction())) {
+          tooltip.draw(canvas);
+        }
       }
     }
     player.draw(canvas);
     canvas.end();
+    drawnCount = drawn;
+    culledCount = total - drawn;
+  }
+
+  /**
+   * Builds the spatial indices of the static entities and draws the cached
+   * platform layer, so that neither happens on the first frame of the level. Must be called outside
+   * of a begin-end pair, once the textures of the level's states are loaded,
+   * and before the level is drawn.
+   * @param canvas the canvas to draw with
+   */
+  public void initGraphics(GameCanvas canvas) {
+    platformIndex = new SpatialIndex<Platform>(width * Shared.PPM, height * Shared.PPM, INDEX_CELL_SIZE);
+    for (Platform platform : platforms) {
+      addDrawBounds(platformIndex, platform);
+    }
+    tooltipIndex = new SpatialIndex<Tooltip>(width * Shared.PPM, height * Shared.PPM, INDEX_CELL_SIZE);
+    for (Tooltip tooltip : tooltips) {
+      addDrawBounds(tooltipIndex, tooltip);
+    }
+    groupIndex = new SpatialIndex<PlatformGroup>(width * Shared.PPM, height * Shared.PPM, INDEX_CELL_SIZE);
+    for (PlatformGroup group : platformGroups) {
+      Vector2 pos = group.getPosition();
+      float w = group.getWidth() / 2;
+      float h = group.getHeight() / 2;
+      groupIndex.add(group, (pos.x - w) * Shared.PPM, (pos.y - h) * Shared.PPM,
+                     (pos.x + w) * Shared.PPM, (pos.y + h) * Shared.PPM);
+    }
+    platformLayer.build(canvas, platforms);
+  }
+
+  /**
+   * Adds the given entity to the index with the bounds of its current frame, in pixels.
+   */
+  private static <T extends Entity> void addDrawBounds(SpatialIndex<T> index, T entity) {
+    TextureRegion region = entity.getRegion();
+    Vector2 pos = entity.getDrawPosition().scl(Shared.PPM);
+    float w = region.getRegionWidth() / 2f;
+    float h = region.getRegionHeight() / 2f;
+    index.add(entity, pos.x - w, pos.y - h, pos.x + w, pos.y + h);
+  }
+
+  /**
+   * Fills the visible platform cache with the platforms in the camera view.
+   */
+  private void queryVisiblePlatforms(GameCanvas canvas) {
+    canvas.getCameraBounds(view);
+    visiblePlatforms.clear();
+    platformIndex.query(view, visiblePlatforms);
+  }
+
+  /**
+   * Returns the number of entities drawn in the last frame.
+   */
+  public int getDrawnCount() {
+    return drawnCount;
+  }
+
+  /**
+   * Returns the number of entities culled outside the camera view in the last frame.
+   */
+  public int getCulledCount() {
+    return culledCount;
   }
 
   /**
    * Draws this level in debug mode.
    */
   public void drawDebug(GameCanvas canvas) {
+    queryVisiblePlatforms(canvas);
+    visibleTooltips.clear();
+    tooltipIndex.query(view, visibleTooltips);
+    visibleGroups.clear();
+    groupIndex.query(view, visibleGroups);
     canvas.beginDebug();
-    for (Tooltip tooltip : tooltips) {
+    for (Tooltip tooltip : visibleTooltips) {
       tooltip.drawPhysics(canvas);
     }
-    for (Platform platform : platforms) {
+    for (Platform platform : visiblePlatforms) {
       platform.drawPhysics(canvas);
     }
-    if (checkpoint != null) {
+    for (PlatformGroup group : visibleGroups) {
+      group.drawPhysics(canvas);
+    }
+    if (checkpoint != null && checkpoint.isVisible(view)) {
       checkpoint.drawPhysics(canvas);
     }
-    if (altar != null) {
+    if (altar != null && altar.isVisible(view)) {
       altar.drawPhysics(canvas);
     }
     for (Enemy enemy : enemies) {
-      enemy.drawPhysics(canvas);
+      if (enemy.isVisible(view)) {
+        enemy.drawPhysics(canvas);
+      }
     }
     if (player.isActive()) {
       player.drawPhysics(canvas);
     }
     canvas.endDebug();
   }
+
+  /**
+   * Releases the graphics resources held by this level.
+   */
+  public void dispose() {
+    platformLayer.dispose();
+  }
 }
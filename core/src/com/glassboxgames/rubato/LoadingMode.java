@@ -15,6 +15,8 @@ import com.glassboxgames.util.*;
 public class LoadingMode implements Screen {
   /** Exit code for finishing asset loading */
   public static final int EXIT_DONE = 0;
+  /** Height of the progress bar, in pixels */
+  private static final float BAR_HEIGHT = 4;
   
   /** Canvas to draw on */
   private GameCanvas canvas;
@@ -24,10 +26,14 @@ public class LoadingMode implements Screen {
   private ScreenListener listener;
   /** Filmstrip for the loading animation */
   private FilmStrip strip;
+  /** Blank texture stretched into the progress bar */
+  private Texture bar;
   /** Filmstrip index */
   private float index;
   /** Whether the manager is done */
   private boolean done;
+  /** Time at which loading started, in milliseconds */
+  private long startTime;
 
   /**
    * Instantiate a LoadingMode.
@@ -40,21 +46,29 @@ public class LoadingMode implements Screen {
     this.manager = manager;
     this.listener = listener;
     strip = new FilmStrip(new Texture(Gdx.files.internal("User Interface/Loading/strip.png")), 1, 25);
+    Pixmap pixmap = new Pixmap(1, 1, Pixmap.Format.RGBA8888);
+    pixmap.setColor(Color.WHITE);
+    pixmap.fill();
+    bar = new Texture(pixmap);
+    pixmap.dispose();
   }
 
   @Override
   public void render(float delta) {
     canvas.clear();
+    TexturePipeline pipeline = TexturePipeline.getInstance();
     if (!done) {
-      if (manager.isFinished()) {
+      if (pipeline.isFinished() && manager.isFinished()) {
         done = true;
+        Gdx.app.log("LoadingMode", String.format("Loaded %.1f MB of textures in %d ms",
+                                                 pipeline.getTotalBytes() / 1e6,
+                                                 TimeUtils.timeSinceMillis(startTime)));
         listener.exitScreen(this, EXIT_DONE);
-      } else {
-        manager.update((int) (delta * 250));
       }
     }
     canvas.begin();
     canvas.draw(strip, Color.WHITE, 50, 50, strip.getWidth(), strip.getHeight());
+    canvas.draw(bar, Color.WHITE, 0, 0, 0, 0, canvas.getWidth() * pipeline.getProgress(), BAR_HEIGHT);
     canvas.end();
     index += 0.5f;
     strip.setFrame((int)index % strip.getSize());
@@ -70,11 +84,15 @@ public class LoadingMode implements Screen {
   public void resume() {}
 
   @Override
-  public void show() {}
+  public void show() {
+    startTime = TimeUtils.millis();
+  }
 
   @Override
   public void hide() {}
 
   @Override
-  public void dispose() {}
+  public void dispose() {
+    bar.dispose();
+  }
 }
@@ -1,16 +1,44 @@
 package com.glassboxgames.rubato;
 
+import java.util.concurrent.*;
 import com.badlogic.gdx.*;
 import com.badlogic.gdx.audio.*;
+import com.badlogic.gdx.files.*;
+import com.badlogic.gdx.utils.*;
 
 /**
- * Controller for playing music.
+ * Controller for playing music on two decks. Tracks are opened on a worker
+ * thread, either ahead of time with prefetch or when first played, and the
+ * playing track crossfades into the next once it is open, so the rendering
+ * thread never waits on an audio stream.
  */
 public class MusicController {
-  /** Currently playing music */
+  /** Default crossfade duration in seconds */
+  public static final float DEFAULT_FADE_DURATION = 1.5f;
+
+  /** Music fading in or playing */
   private Music music;
-  /** Key for currently playing music */
+  /** Key for music fading in or playing */
   private String key;
+  /** Music fading out, or null if none */
+  private Music fading;
+  /** Volume of the fading music when its fade began */
+  private float fadingVolume;
+  /** Time in seconds since the current fade began */
+  private float fadeTime;
+  /** Crossfade duration in seconds */
+  private float fadeDuration;
+
+  /** Track being opened or already open, or null if none */
+  private Future<Music> next;
+  /** Key for the track being opened or already open */
+  private String nextKey;
+  /** Whether to play the next track as soon as it is open */
+  private boolean playNext;
+  /** Tracks no longer wanted, disposed once they are open */
+  private Array<Future<Music>> discarded;
+  /** Worker thread for opening tracks, created on first use */
+  private ExecutorService worker;
 
   /** The singleton instance */
   private static MusicController controller = null;
@@ -18,7 +46,10 @@ public class MusicController {
   /**
    * Instantiates a music controller.
    */
-  private MusicController() {}
+  private MusicController() {
+    fadeDuration = DEFAULT_FADE_DURATION;
+    discarded = new Array<Future<Music>>();
+  }
 
   /**
    * Returns the singleton instance of this controller.
@@ -29,37 +60,161 @@ public class MusicController {
     }
     return controller;
   }
-  
+
+  /**
+   * Sets the crossfade duration.
+   * @param fadeDuration duration in seconds
+   */
+  public void setFadeDuration(float fadeDuration) {
+    this.fadeDuration = fadeDuration;
+  }
+
   /**
-   * Plays the music from the given key.
+   * Starts opening the music from the given key on the worker thread, so that
+   * a later call to play can start it without waiting. Replaces any other
+   * track opened ahead of time.
+   */
+  public void prefetch(String key) {
+    if (key.equals(this.key) || key.equals(nextKey)) {
+      return;
+    }
+    discardNext();
+    if (worker == null) {
+      worker = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+          Thread thread = new Thread(runnable, "MusicController");
+          thread.setDaemon(true);
+          return thread;
+        }
+      });
+    }
+    final FileHandle file = Gdx.files.internal(Shared.getMusicPath(key));
+    nextKey = key;
+    next = worker.submit(new Callable<Music>() {
+      @Override
+      public Music call() {
+        return Gdx.audio.newMusic(file);
+      }
+    });
+  }
+
+  /**
+   * Plays the music from the given key, crossfading from the current music
+   * once the track is open.
    */
   public void play(String key) {
-    if (!key.equals(this.key)) {
-      if (music != null) {
-        music.dispose();
+    if (key.equals(this.key)) {
+      playNext = false;
+      return;
+    }
+    prefetch(key);
+    playNext = true;
+    update(0);
+  }
+
+  /**
+   * Starts the next track once it is open and advances the crossfade.
+   * Should be called once per frame.
+   * @param delta time in seconds since last frame
+   */
+  public void update(float delta) {
+    for (int i = discarded.size - 1; i >= 0; i--) {
+      if (discarded.get(i).isDone()) {
+        Music track = getOpened(discarded.removeIndex(i));
+        if (track != null) {
+          track.dispose();
+        }
+      }
+    }
+    if (playNext && next.isDone()) {
+      Music track = getOpened(next);
+      String trackKey = nextKey;
+      next = null;
+      nextKey = null;
+      playNext = false;
+      if (track != null) {
+        crossfade(trackKey, track);
+      }
+    }
+    if (music != null && fadeTime < fadeDuration) {
+      fadeTime = Math.min(fadeTime + delta, fadeDuration);
+      float progress = fadeDuration > 0 ? fadeTime / fadeDuration : 1;
+      music.setVolume(SaveController.getInstance().getMusicVolume() * progress);
+      if (fading != null) {
+        fading.setVolume(fadingVolume * (1 - progress));
       }
-      this.key = key;
-      music = Gdx.audio.newMusic(Gdx.files.internal(Shared.getMusicPath(key)));
-      resetVolume();
-      music.setLooping(true);
-      music.play();
     }
+    if (fading != null && fadeTime >= fadeDuration) {
+      fading.dispose();
+      fading = null;
+    }
+  }
+
+  /**
+   * Moves the current music to the fading deck and starts the given track
+   * silently in its place. Music still fading from an earlier crossfade is
+   * cut off.
+   */
+  private void crossfade(String key, Music track) {
+    if (fading != null) {
+      fading.dispose();
+    }
+    fading = music;
+    fadingVolume = music == null ? 0 : music.getVolume();
+    music = track;
+    this.key = key;
+    fadeTime = 0;
+    music.setVolume(0);
+    music.setLooping(true);
+    music.play();
+  }
+
+  /**
+   * Returns the track of a finished opening task, or null if it failed.
+   */
+  private Music getOpened(Future<Music> task) {
+    try {
+      return task.get();
+    } catch (ExecutionException e) {
+      Gdx.app.error("MusicController", "Could not open music", e.getCause());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    return null;
   }
 
   /**
-   * Stops the music.
+   * Abandons the track being opened or already open, disposing it once open.
+   */
+  private void discardNext() {
+    if (next != null) {
+      discarded.add(next);
+    }
+    next = null;
+    nextKey = null;
+    playNext = false;
+  }
+
+  /**
+   * Stops the music, including any music fading out or waiting to play.
    */
   public void stop() {
+    playNext = false;
+    if (fading != null) {
+      fading.dispose();
+      fading = null;
+    }
     if (music != null) {
       music.stop();
     }
   }
 
   /**
-   * Resets the current music volume from the save.
+   * Resets the current music volume from the save, unless it is fading in.
    */
   public void resetVolume() {
-    if (music != null) {
+    if (music != null && fadeTime >= fadeDuration) {
       music.setVolume(SaveController.getInstance().getMusicVolume());
     }
   }
@@ -68,8 +223,26 @@ public class MusicController {
    * Disposes this controller.
    */
   public void dispose() {
+    discardNext();
+    if (worker != null) {
+      worker.shutdown();
+      worker = null;
+    }
+    for (Future<Music> task : discarded) {
+      Music track = getOpened(task);
+      if (track != null) {
+        track.dispose();
+      }
+    }
+    discarded.clear();
+    if (fading != null) {
+      fading.dispose();
+      fading = null;
+    }
     if (music != null) {
       music.dispose();
+      music = null;
     }
+    key = null;
   }
 }
@@ -0,0 +1,157 @@
+package com.glassboxgames.rubato;
+
+import com.badlogic.gdx.*;
+import com.badlogic.gdx.graphics.g2d.*;
+import com.badlogic.gdx.graphics.g2d.ParticleEffectPool.PooledEffect;
+import com.badlogic.gdx.utils.*;
+
+/**
+ * Singleton registry of particle effects. Each effect definition is parsed
+ * once into a prototype, and instances are handed out from a pool per effect.
+ */
+public class ParticleController {
+  /** Directory containing the effect definitions and their images */
+  public static final String PARTICLE_DIR = "Particles/";
+  /** Default number of instances created when an effect is registered */
+  public static final int DEFAULT_INITIAL = 4;
+  /** Default maximum number of free instances kept per effect */
+  public static final int DEFAULT_MAX = 16;
+
+  /**
+   * Class holding the prototype, pool and counters of one effect.
+   */
+  private static class Entry {
+    /** The parsed effect definition, sharing its images with every instance */
+    public ParticleEffect prototype;
+    /** The pool of instances */
+    public ParticleEffectPool pool;
+    /** Number of instances obtained from the free list */
+    public int hits;
+    /** Number of instances that had to be created */
+    public int misses;
+  }
+
+  /** The registered effects, by file name */
+  private ObjectMap<String, Entry> entries;
+  /** Scratch array for filling a new pool */
+  private Array<PooledEffect> fill;
+
+  /** The singleton instance of the controller */
+  private static ParticleController controller = null;
+
+  /**
+   * Returns the singleton instance of the controller.
+   */
+  public static ParticleController getInstance() {
+    if (controller == null) {
+      controller = new ParticleController();
+    }
+    return controller;
+  }
+
+  /**
+   * Creates a new particle controller. Only used to create the singleton.
+   */
+  private ParticleController() {
+    entries = new ObjectMap<String, Entry>();
+    fill = new Array<PooledEffect>();
+  }
+
+  /**
+   * Parses the given effect and creates its pool, unless already registered.
+   * @param name file name of the effect in the particle directory
+   * @param initial number of instances to create up front
+   * @param max maximum number of free instances to keep
+   */
+  public void register(String name, int initial, int max) {
+    if (entries.containsKey(name)) {
+      return;
+    }
+    Entry entry = new Entry();
+    entry.prototype = new ParticleEffect();
+    entry.prototype.load(Gdx.files.internal(PARTICLE_DIR + name), Gdx.files.internal(PARTICLE_DIR));
+    entry.pool = new ParticleEffectPool(entry.prototype, initial, max);
+    for (int i = 0; i < initial; i++) {
+      fill.add(entry.pool.obtain());
+    }
+    entry.pool.freeAll(fill);
+    fill.clear();
+    entries.put(name, entry);
+  }
+
+  /**
+   * Returns the entry of the given effect, registering it with the default
+   * pool sizes if needed.
+   */
+  private Entry getEntry(String name) {
+    Entry entry = entries.get(name);
+    if (entry == null) {
+      Gdx.app.error("ParticleController", "Registering unknown effect on first use: " + name);
+      register(name, DEFAULT_INITIAL, DEFAULT_MAX);
+      entry = entries.get(name);
+    }
+    return entry;
+  }
+
+  /**
+   * Returns a reset instance of the given effect from its pool.
+   * @param name file name of the effect in the particle directory
+   */
+  public PooledEffect obtain(String name) {
+    Entry entry = getEntry(name);
+    if (entry.pool.getFree() > 0) {
+      entry.hits++;
+    } else {
+      entry.misses++;
+    }
+    return entry.pool.obtain();
+  }
+
+  /**
+   * Updates the given effect, returning it to its pool once complete.
+   * @param effect the effect to update
+   * @param delta time since the last update in seconds
+   * @return whether the effect is still running and may be used
+   */
+  public boolean update(PooledEffect effect, float delta) {
+    effect.update(delta);
+    if (effect.isComplete()) {
+      effect.free();
+      return false;
+    }
+    return true;
+  }
+
+  /**
+   * Returns the total number of instances obtained from a free list.
+   */
+  public int getHits() {
+    int hits = 0;
+    for (Entry entry : entries.values()) {
+      hits += entry.hits;
+    }
+    return hits;
+  }
+
+  /**
+   * Returns the total number of instances that had to be created.
+   */
+  public int getMisses() {
+    int misses = 0;
+    for (Entry entry : entries.values()) {
+      misses += entry.misses;
+    }
+    return misses;
+  }
+
+  /**
+   * Disposes the effect images and forgets every registered effect.
+   */
+  public void dispose() {
+    for (Entry entry : entries.values()) {
+      entry.pool.clear();
+      entry.prototype.dispose();
+    }
+    entries.clear();
+  }
+}
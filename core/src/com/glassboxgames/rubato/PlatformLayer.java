@@ -0,0 +1,180 @@
+package com.glassboxgames.rubato;
+
+import com.badlogic.gdx.graphics.*;
+import com.badlogic.gdx.graphics.g2d.*;
+import com.badlogic.gdx.graphics.glutils.*;
+import com.badlogic.gdx.math.*;
+import com.badlogic.gdx.utils.*;
+import com.glassboxgames.rubato.entity.*;
+
+/**
+ * Cached render layer for the static platforms of a level. The platforms are
+ * drawn once into screen-sized offscreen buffers, which are then drawn as a
+ * few quads per frame. Crumbling platforms are not cached.
+ */
+public class PlatformLayer {
+  /** Maximum side length of a chunk, in pixels */
+  private static final int CHUNK_SIZE = 1024;
+
+  /** The frame buffers of the non-empty chunks */
+  private Array<FrameBuffer> buffers;
+  /** The flipped texture regions of the chunk buffers */
+  private Array<TextureRegion> regions;
+  /** The bottom left corners of the chunks, in pixels */
+  private Array<Vector2> origins;
+  /** Cache for the drawn bounds of a platform */
+  private Rectangle bounds;
+
+  /**
+   * Instantiates an empty platform layer. No buffers are created until the
+   * layer is built.
+   */
+  public PlatformLayer() {
+    buffers = new Array<FrameBuffer>();
+    regions = new Array<TextureRegion>();
+    origins = new Array<Vector2>();
+    bounds = new Rectangle();
+  }
+
+  /**
+   * Returns whether the given platform is drawn as part of this layer. Only
+   * crumbling platforms are ever removed from a level, and they are not
+   * cached, so the layer never needs to be rebuilt during a level.
+   */
+  public static boolean isCached(Platform platform) {
+    return platform.getType() != Platform.Type.CRUMBLING.ordinal();
+  }
+
+  /**
+   * Returns the number of chunk buffers currently in this layer.
+   */
+  public int getChunkCount() {
+    return buffers.size;
+  }
+
+  /**
+   * Draws the cached platforms into the chunk buffers, replacing any previous
+   * buffers. Each platform is drawn only into the chunks it overlaps. Must be
+   * called outside of a begin-end pair, once the platform textures are loaded.
+   * @param canvas the canvas to draw with
+   * @param platforms the platforms of the level
+   */
+  public void build(GameCanvas canvas, Array<Platform> platforms) {
+    clear();
+    float minX = Float.MAX_VALUE, minY = Float.MAX_VALUE;
+    float maxX = -Float.MAX_VALUE, maxY = -Float.MAX_VALUE;
+    for (Platform platform : platforms) {
+      if (isCached(platform)) {
+        getBounds(platform, bounds);
+        minX = Math.min(minX, bounds.x);
+        minY = Math.min(minY, bounds.y);
+        maxX = Math.max(maxX, bounds.x + bounds.width);
+        maxY = Math.max(maxY, bounds.y + bounds.height);
+      }
+    }
+    if (minX > maxX) {
+      return;
+    }
+    int x0 = MathUtils.floor(minX);
+    int y0 = MathUtils.floor(minY);
+    int x1 = MathUtils.ceil(maxX);
+    int y1 = MathUtils.ceil(maxY);
+    int cols = Math.max(1, MathUtils.ceil((float)(x1 - x0) / CHUNK_SIZE));
+    int rows = Math.max(1, MathUtils.ceil((float)(y1 - y0) / CHUNK_SIZE));
+
+    // bucket the platforms by chunk, keeping their draw order
+    Array<Array<Platform>> chunks = new Array<Array<Platform>>(cols * rows);
+    for (int i = 0; i < cols * rows; i++) {
+      chunks.add(new Array<Platform>());
+    }
+    for (Platform platform : platforms) {
+      if (isCached(platform)) {
+        getBounds(platform, bounds);
+        int col0 = MathUtils.clamp((int)((bounds.x - x0) / CHUNK_SIZE), 0, cols - 1);
+        int row0 = MathUtils.clamp((int)((bounds.y - y0) / CHUNK_SIZE), 0, rows - 1);
+        int col1 = MathUtils.clamp((int)((bounds.x + bounds.width - x0) / CHUNK_SIZE), 0, cols - 1);
+        int row1 = MathUtils.clamp((int)((bounds.y + bounds.height - y0) / CHUNK_SIZE), 0, rows - 1);
+        for (int row = row0; row <= row1; row++) {
+          for (int col = col0; col <= col1; col++) {
+            chunks.get(row * cols + col).add(platform);
+          }
+        }
+      }
+    }
+
+    for (int row = 0; row < rows; row++) {
+      for (int col = 0; col < cols; col++) {
+        Array<Platform> chunk = chunks.get(row * cols + col);
+        if (chunk.size == 0) {
+          continue;
+        }
+        int cx = x0 + col * CHUNK_SIZE;
+        int cy = y0 + row * CHUNK_SIZE;
+        int w = Math.min(CHUNK_SIZE, x1 - cx);
+        int h = Math.min(CHUNK_SIZE, y1 - cy);
+        FrameBuffer buffer = new FrameBuffer(Pixmap.Format.RGBA8888, w, h, false);
+        buffer.getColorBufferTexture().setFilter(Texture.TextureFilter.Linear, Texture.TextureFilter.Linear);
+        canvas.beginBuffer(buffer, cx, cy);
+        for (Platform platform : chunk) {
+          platform.draw(canvas);
+        }
+        canvas.endBuffer(buffer);
+        TextureRegion region = new TextureRegion(buffer.getColorBufferTexture());
+        region.flip(false, true);
+        buffers.add(buffer);
+        regions.add(region);
+        origins.add(new Vector2(cx, cy));
+      }
+    }
+  }
+
+  /**
+   * Stores the drawn bounds of the given platform, in pixels, in the given rectangle.
+   */
+  private static void getBounds(Platform platform, Rectangle out) {
+    TextureRegion region = platform.getRegion();
+    Vector2 pos = platform.getDrawPosition().scl(Shared.PPM);
+    out.set(pos.x - region.getRegionWidth() / 2f, pos.y - region.getRegionHeight() / 2f,
+            region.getRegionWidth(), region.getRegionHeight());
+  }
+
+  /**
+   * Draws the chunk buffers overlapping the given view. Must be called inside
+   * a begin-end pair.
+   * @param canvas the canvas to draw on
+   * @param view the visible rectangle of the level, in pixels
+   */
+  public void draw(GameCanvas canvas, Rectangle view) {
+    canvas.setBlendState(GameCanvas.BlendState.ALPHA_BLEND);
+    for (int i = 0; i < regions.size; i++) {
+      TextureRegion region = regions.get(i);
+      Vector2 origin = origins.get(i);
+      if (origin.x + region.getRegionWidth() <= view.x || origin.x >= view.x + view.width
+          || origin.y + region.getRegionHeight() <= view.y || origin.y >= view.y + view.height) {
+        continue;
+      }
+      canvas.draw(region, Color.WHITE, origin.x, origin.y,
+                  region.getRegionWidth(), region.getRegionHeight());
+    }
+    canvas.setBlendState(GameCanvas.BlendState.NO_PREMULT);
+  }
+
+  /**
+   * Disposes the chunk buffers.
+   */
+  private void clear() {
+    for (FrameBuffer buffer : buffers) {
+      buffer.dispose();
+    }
+    buffers.clear();
+    regions.clear();
+    origins.clear();
+  }
+
+  /**
+   * Releases the chunk buffers of this layer.
+   */
+  public void dispose() {
+    clear();
+  }
+}
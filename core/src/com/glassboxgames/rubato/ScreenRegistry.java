@@ -0,0 +1,122 @@
+package com.glassboxgames.rubato;
+
+import com.badlogic.gdx.*;
+import com.badlogic.gdx.utils.*;
+
+/**
+ * Registry of screens that are constructed the first time they are used.
+ * Screens registered as disposable are disposed again when memory runs low,
+ * and are constructed anew on their next use.
+ */
+public class ScreenRegistry {
+  /** Fraction of the maximum Java heap in use above which memory is low */
+  public static final float MEMORY_PRESSURE = 0.75f;
+
+  /**
+   * Interface for constructing a registered screen.
+   */
+  public interface Factory<T extends Screen> {
+    /**
+     * Constructs the screen and its user interface.
+     */
+    T create();
+  }
+
+  /**
+   * Class holding the factory and instance of a registered screen.
+   */
+  private static class Entry {
+    /** Factory constructing the screen */
+    public Factory<? extends Screen> factory;
+    /** The constructed screen, or null if not constructed */
+    public Screen screen;
+    /** Whether the screen may be disposed under memory pressure */
+    public boolean disposable;
+  }
+
+  /** Registered screens by type, in registration order */
+  private OrderedMap<Class<? extends Screen>, Entry> entries;
+
+  /**
+   * Instantiates an empty screen registry.
+   */
+  public ScreenRegistry() {
+    entries = new OrderedMap<Class<? extends Screen>, Entry>();
+  }
+
+  /**
+   * Registers the factory of the given screen type.
+   * @param type class of the screen
+   * @param factory factory constructing the screen
+   * @param disposable whether the screen may be disposed under memory pressure
+   */
+  public <T extends Screen> void register(Class<T> type, Factory<T> factory, boolean disposable) {
+    Entry entry = new Entry();
+    entry.factory = factory;
+    entry.disposable = disposable;
+    entries.put(type, entry);
+  }
+
+  /**
+   * Returns the screen of the given type, constructing it on first use.
+   * @param type class of the screen
+   */
+  public <T extends Screen> T get(Class<T> type) {
+    Entry entry = entries.get(type);
+    if (entry == null) {
+      throw new RuntimeException("Screen " + type.getSimpleName() + " is not registered");
+    }
+    if (entry.screen == null) {
+      entry.screen = entry.factory.create();
+    }
+    return type.cast(entry.screen);
+  }
+
+  /**
+   * Resizes every constructed screen.
+   */
+  public void resize(int width, int height) {
+    for (Entry entry : entries.values()) {
+      if (entry.screen != null) {
+        entry.screen.resize(width, height);
+      }
+    }
+  }
+
+  /**
+   * Returns whether the Java heap in use exceeds the memory pressure threshold.
+   */
+  public static boolean isMemoryLow() {
+    Runtime runtime = Runtime.getRuntime();
+    return runtime.totalMemory() - runtime.freeMemory() > runtime.maxMemory() * MEMORY_PRESSURE;
+  }
+
+  /**
+   * Disposes every constructed disposable screen other than the given one.
+   * @param current the screen being shown, which is kept
+   * @return the number of screens disposed
+   */
+  public int trim(Screen current) {
+    int count = 0;
+    for (Entry entry : entries.values()) {
+      if (entry.disposable && entry.screen != null && entry.screen != current) {
+        entry.screen.dispose();
+        entry.screen = null;
+        count++;
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Disposes every constructed screen.
+   */
+  public void dispose() {
+    for (Entry entry : entries.values()) {
+      if (entry.screen != null) {
+        entry.screen.dispose();
+        entry.screen = null;
+      }
+    }
+  }
+}
@@ -126,6 +126,7 @@ public class SelectMode implements Screen {
         public void clicked(InputEvent e, float x, float y) {
           chapter = newChapter;
           page = 0;
+          prefetchLatest();
         }
       });
       chapterButtons.add(button);
@@ -155,10 +156,11 @@ public class SelectMode implements Screen {
 
     final SoundController soundController = SoundController.getInstance();
 
-    for (int c = 0; c < Shared.CHAPTER_LEVELS.size; c++) {
+    LevelCatalog catalog = LevelCatalog.getInstance();
+    for (int c = 0; c < catalog.getChapterCount(); c++) {
       Array<ImageTextButton> buttons = new Array<ImageTextButton>();
-      for (int l = 0; l < Shared.CHAPTER_LEVELS.get(c).size - 1; l++) {
-        if (c == Shared.CHAPTER_LEVELS.size - 1 && l == Shared.CHAPTER_LEVELS.get(c).size - 2) {
+      for (int l = 0; l < catalog.getLevelCount(c) - 1; l++) {
+        if (c == catalog.getChapterCount() - 1 && l == catalog.getLevelCount(c) - 2) {
           continue;
         }
         final ImageTextButton button = new ImageTextButton(Integer.toString(l + 1), lockedLevelStyle);
@@ -330,8 +332,18 @@ public class SelectMode implements Screen {
   @Override
   public void resume() {}
 
+  /**
+   * Starts loading the latest unlocked level of the current chapter, the
+   * level most likely to be picked next.
+   */
+  private void prefetchLatest() {
+    int unlocked = SaveController.getInstance().getLevelsUnlocked(chapter);
+    LevelCatalog.getInstance().prefetch(chapter, Math.max(0, unlocked - 1));
+  }
+
   @Override
   public void show() {
+    prefetchLatest();
     active = true;
     Gdx.input.setInputProcessor(stage);
     MusicController.getInstance().play("adagio");
@@ -40,6 +40,8 @@ public final class Shared {
   public static final String SOUND_MAP_FILE = "Data/sounds.json";
   /** File containing the music shortname map */
   public static final String MUSIC_MAP_FILE = "Data/music.json";
+  /** File containing the asset bundle manifest */
+  public static final String BUNDLE_FILE = "Data/bundles.json";
 
   /** JSON serializer/deserializer */
   public static final Json JSON = new Json();
@@ -50,6 +52,10 @@ public final class Shared {
   /** Map of texture shortnames to textures */
   public static final OrderedMap<String, Texture> TEXTURE_MAP = new OrderedMap<String, Texture>();
 
+  /** Map of bundle names to bundle data, for textures loaded on demand */
+  public static final OrderedMap<String, BundleData> BUNDLES =
+    JSON.fromJson(OrderedMap.class, BundleData.class, Gdx.files.internal(BUNDLE_FILE));
+
   /** Map of sound shortnames to sound file paths */
   public static final OrderedMap<String, String> SOUND_PATHS =
     JSON.fromJson(OrderedMap.class, Gdx.files.internal(SOUND_MAP_FILE));
@@ -65,11 +71,10 @@ public final class Shared {
   /** Map of font shortnames to font objects */
   public static final OrderedMap<String, BitmapFont> FONT_MAP = new OrderedMap<String, BitmapFont>();
 
-  /** Array of level data arrays, ordered by chapter */
-  public static final Array<Array<LevelData>> CHAPTER_LEVELS = new Array<Array<LevelData>>();
-
-  /** Shape renderer for overlays */
-  public static final ShapeRenderer OVERLAY_RENDERER = new ShapeRenderer();
+  /** Shape renderer for overlays, created on first use */
+  private static ShapeRenderer overlayRenderer = null;
+  /** Color cache for black overlays */
+  private static final Color overlayColor = new Color();
   /** Classic teal color */
   public static final Color TEAL = new Color(0f, 1f, 0.82f, 1f);
 
@@ -97,33 +102,20 @@ public final class Shared {
     FONT_FILES.add("Fonts/Rajdhani-SemiBold.ttf");
     FONT_FILES.add("Fonts/Rajdhani-Bold.ttf");
 
-    Array<ChapterData> chapters = JSON.fromJson(Array.class, ChapterData.class,
-                                                Gdx.files.internal(CHAPTERS_FILE));
-    for (ChapterData chapter : chapters) {
-      Array<LevelData> maps = new Array<LevelData>();
-      for (String mapPath : chapter.maps) {
-        maps.add(JSON.fromJson(LevelData.class, Gdx.files.internal(mapPath)));
-      }
-      CHAPTER_NAMES.add(chapter.key);
-      CHAPTER_LEVELS.add(maps);
-    }
+    CHAPTER_NAMES.addAll(LevelCatalog.getInstance().getChapterNames());
 
     ShaderProgram.pedantic = false;
   }
 
   /**
-   * Creates font loader parameters with the given info.
-   * @param weight font weight
+   * Creates font generator parameters with the given info.
    * @param size font size
    * @param spacing character spacing
    */
-  public static FreetypeFontLoader.FreeTypeFontLoaderParameter
-    createFontLoaderParams(int weight, int size, int spacing) {
-    FreetypeFontLoader.FreeTypeFontLoaderParameter params =
-      new FreetypeFontLoader.FreeTypeFontLoaderParameter();
-    params.fontFileName = FONT_FILES.get(weight);
-    params.fontParameters.size = size;
-    params.fontParameters.spaceX = spacing;
+  public static FreeTypeFontGenerator.FreeTypeFontParameter createFontParams(int size, int spacing) {
+    FreeTypeFontGenerator.FreeTypeFontParameter params = new FreeTypeFontGenerator.FreeTypeFontParameter();
+    params.size = size;
+    params.spaceX = spacing;
     return params;
   }
 
@@ -168,7 +160,10 @@ public final class Shared {
   public static void drawOverlay(Color color) {
     Gdx.gl.glEnable(GL20.GL_BLEND);
     Gdx.gl.glBlendFunc(GL20.GL_SRC_ALPHA, GL20.GL_ONE_MINUS_SRC_ALPHA);
-    ShapeRenderer renderer = OVERLAY_RENDERER;
+    if (overlayRenderer == null) {
+      overlayRenderer = new ShapeRenderer();
+    }
+    ShapeRenderer renderer = overlayRenderer;
     renderer.begin(ShapeRenderer.ShapeType.Filled);
     renderer.setColor(color);
     renderer.rect(0, 0, Gdx.graphics.getWidth(), Gdx.graphics.getHeight());
@@ -180,7 +175,7 @@ public final class Shared {
    * Draw a black overlay with the given alpha.
    */
   public static void drawOverlay(float alpha) {
-    drawOverlay(new Color(0, 0, 0, alpha));
+    drawOverlay(overlayColor.set(0, 0, 0, alpha));
   }
 
   /**
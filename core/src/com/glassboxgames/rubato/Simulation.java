@@ -0,0 +1,135 @@
+package com.glassboxgames.rubato;
+
+import com.badlogic.gdx.physics.box2d.*;
+import com.glassboxgames.rubato.GameMode.GameState;
+import com.glassboxgames.rubato.entity.*;
+
+/**
+ * Fixed-step simulation of a level, advanced one tick at a time. The game
+ * mode and the headless tools all tick levels through this class, so that
+ * they play, enter the altar scene and exit the same way.
+ */
+public class Simulation {
+  /** Exit code returned by a tick after which the level goes on */
+  public static final int CONTINUE = -1;
+
+  /** The Box2D world holding the level's bodies */
+  private World world;
+  /** The level being simulated */
+  private LevelContainer level;
+  /** Whether the level is being played from the editor */
+  private boolean editable;
+  /** Current state of the game, either PLAY or ALTAR */
+  private GameState state;
+
+  /**
+   * Instantiates a simulation of a level whose physics are active in the given world.
+   * @param world the Box2D world
+   * @param level the level to simulate
+   * @param editable whether the level is being played from the editor
+   */
+  public Simulation(World world, LevelContainer level, boolean editable) {
+    this.world = world;
+    this.level = level;
+    this.editable = editable;
+    state = GameState.PLAY;
+  }
+
+  /**
+   * Returns the level being simulated.
+   */
+  public LevelContainer getLevel() {
+    return level;
+  }
+
+  /**
+   * Returns the current state of the game, either PLAY or ALTAR.
+   */
+  public GameState getState() {
+    return state;
+  }
+
+  /**
+   * Advances the level by one tick, reading gameplay input from the input
+   * controller. The rest of the tick still runs when it asks to exit.
+   * @param delta length of the tick in seconds
+   * @return the GameMode exit code requested during the tick, or CONTINUE if none
+   */
+  public int tick(float delta) {
+    InputController input = InputController.getInstance();
+    level.storePositions();
+    input.beginTick();
+    int code = state == GameState.ALTAR ? tickAltar(delta) : tickPlay(delta);
+    input.endTick(input.needsChecksum() ? level.getChecksum() : 0);
+    return code;
+  }
+
+  /**
+   * Advances the level by one tick while playing.
+   * @param delta length of the tick in seconds
+   * @return the requested exit code, or CONTINUE if none
+   */
+  private int tickPlay(float delta) {
+    FrameProfiler profiler = FrameProfiler.getInstance();
+    Player player = level.getPlayer();
+    int code = CONTINUE;
+    if (player.isActive()) {
+      if (player.getPosition().x >= level.getWidth()) {
+        code = editable ? GameMode.EXIT_RESET : GameMode.EXIT_COMPLETE;
+      }
+      profiler.begin(FrameProfiler.PLAYER);
+      level.updatePlayer(InputController.getInstance(), delta);
+      profiler.end(FrameProfiler.PLAYER);
+    } else {
+      code = GameMode.EXIT_RESET;
+    }
+
+    level.update(world, delta);
+
+    Altar altar = level.getAltar();
+    if (altar != null && altar.isPlayerSeen() && !editable) {
+      state = GameState.ALTAR;
+    }
+
+    profiler.begin(FrameProfiler.SYNC);
+    level.sync();
+    profiler.end(FrameProfiler.SYNC);
+    profiler.begin(FrameProfiler.STEP);
+    world.step(delta, GameMode.VELOCITY_ITERATIONS, GameMode.POSITION_ITERATIONS);
+    CollisionController.getInstance().processEvents();
+    profiler.end(FrameProfiler.STEP);
+    return code;
+  }
+
+  /**
+   * Advances the level by one tick during the altar scene.
+   * @param delta length of the tick in seconds
+   * @return the requested exit code, or CONTINUE if none
+   */
+  private int tickAltar(float delta) {
+    FrameProfiler profiler = FrameProfiler.getInstance();
+    Player player = level.getPlayer();
+    int code = CONTINUE;
+    if (level.getAltar().isPlayerClose()) {
+      player.setInput(0);
+      player.startEnd();
+      if (player.getCount() > player.getState().getLength()) {
+        code = GameMode.EXIT_COMPLETE;
+      }
+    } else {
+      player.setInput(1);
+    }
+    profiler.begin(FrameProfiler.PLAYER);
+    player.update(delta);
+    profiler.end(FrameProfiler.PLAYER);
+    profiler.begin(FrameProfiler.SYNC);
+    player.sync();
+    profiler.end(FrameProfiler.SYNC);
+
+    profiler.begin(FrameProfiler.STEP);
+    world.step(delta, GameMode.VELOCITY_ITERATIONS, GameMode.POSITION_ITERATIONS);
+    CollisionController.getInstance().processEvents();
+    profiler.end(FrameProfiler.STEP);
+    return code;
+  }
+}
@@ -0,0 +1,137 @@
+package com.glassboxgames.rubato;
+
+import com.badlogic.gdx.math.*;
+import com.badlogic.gdx.utils.*;
+
+/**
+ * Uniform grid over the bounds of a level, used to find the static objects
+ * overlapping a rectangle without visiting every object in the level.
+ * Objects outside the level bounds are stored in the border cells.
+ */
+public class SpatialIndex<T> {
+  /**
+   * Class representing an object stored in the grid with its bounds.
+   */
+  private static class Entry<T> {
+    /** The stored object */
+    public T item;
+    /** The bounds of the object */
+    public float x0, y0, x1, y1;
+    /** The range of cells covered by the object */
+    public int cx0, cy0, cx1, cy1;
+  }
+
+  /** Side length of a cell */
+  private float cellSize;
+  /** Number of columns and rows */
+  private int cols, rows;
+  /** Entries overlapping each cell, in row-major order */
+  private Array<Entry<T>>[] cells;
+  /** Entry of each stored object */
+  private ObjectMap<T, Entry<T>> entries;
+
+  /**
+   * Instantiates an empty grid covering the rectangle (0, 0) to (width, height).
+   * @param width width of the indexed area
+   * @param height height of the indexed area
+   * @param cellSize side length of a cell
+   */
+  @SuppressWarnings("unchecked")
+  public SpatialIndex(float width, float height, float cellSize) {
+    this.cellSize = cellSize;
+    cols = Math.max(1, MathUtils.ceil(width / cellSize));
+    rows = Math.max(1, MathUtils.ceil(height / cellSize));
+    cells = new Array[cols * rows];
+    for (int i = 0; i < cells.length; i++) {
+      cells[i] = new Array<Entry<T>>(false, 4);
+    }
+    entries = new ObjectMap<T, Entry<T>>();
+  }
+
+  /**
+   * Returns the column containing the given x-coordinate.
+   */
+  private int getCol(float x) {
+    return MathUtils.clamp((int)Math.floor(x / cellSize), 0, cols - 1);
+  }
+
+  /**
+   * Returns the row containing the given y-coordinate.
+   */
+  private int getRow(float y) {
+    return MathUtils.clamp((int)Math.floor(y / cellSize), 0, rows - 1);
+  }
+
+  /**
+   * Adds an object with the given bounds to the grid.
+   */
+  public void add(T item, float x0, float y0, float x1, float y1) {
+    Entry<T> entry = new Entry<T>();
+    entry.item = item;
+    entry.x0 = x0;
+    entry.y0 = y0;
+    entry.x1 = x1;
+    entry.y1 = y1;
+    entry.cx0 = getCol(x0);
+    entry.cy0 = getRow(y0);
+    entry.cx1 = getCol(x1);
+    entry.cy1 = getRow(y1);
+    for (int cy = entry.cy0; cy <= entry.cy1; cy++) {
+      for (int cx = entry.cx0; cx <= entry.cx1; cx++) {
+        cells[cy * cols + cx].add(entry);
+      }
+    }
+    entries.put(item, entry);
+  }
+
+  /**
+   * Removes an object from the grid, if present.
+   */
+  public void remove(T item) {
+    Entry<T> entry = entries.remove(item);
+    if (entry == null) {
+      return;
+    }
+    for (int cy = entry.cy0; cy <= entry.cy1; cy++) {
+      for (int cx = entry.cx0; cx <= entry.cx1; cx++) {
+        cells[cy * cols + cx].removeValue(entry, true);
+      }
+    }
+  }
+
+  /**
+   * Returns the number of objects in the grid.
+   */
+  public int size() {
+    return entries.size;
+  }
+
+  /**
+   * Adds every object overlapping the given rectangle to the output array.
+   * Each object is reported once, from the first cell it shares with the rectangle.
+   * @param rect the rectangle to query
+   * @param out the array to add the objects to
+   * @return the output array
+   */
+  public Array<T> query(Rectangle rect, Array<T> out) {
+    float x1 = rect.x + rect.width;
+    float y1 = rect.y + rect.height;
+    int qx0 = getCol(rect.x);
+    int qy0 = getRow(rect.y);
+    int qx1 = getCol(x1);
+    int qy1 = getRow(y1);
+    for (int cy = qy0; cy <= qy1; cy++) {
+      for (int cx = qx0; cx <= qx1; cx++) {
+        Array<Entry<T>> cell = cells[cy * cols + cx];
+        for (int i = 0; i < cell.size; i++) {
+          Entry<T> entry = cell.get(i);
+          if (Math.max(entry.cx0, qx0) == cx && Math.max(entry.cy0, qy0) == cy
+              && entry.x1 > rect.x && entry.x0 < x1 && entry.y1 > rect.y && entry.y0 < y1) {
+            out.add(entry.item);
+          }
+        }
+      }
+    }
+    return out;
+  }
+}
@@ -0,0 +1,297 @@
+package com.glassboxgames.rubato;
+
+import java.util.concurrent.*;
+import com.badlogic.gdx.*;
+import com.badlogic.gdx.assets.*;
+import com.badlogic.gdx.assets.loaders.*;
+import com.badlogic.gdx.files.*;
+import com.badlogic.gdx.graphics.*;
+import com.badlogic.gdx.graphics.glutils.*;
+import com.badlogic.gdx.utils.*;
+
+/**
+ * Singleton loader that decodes textures into pixmaps on a pool of worker
+ * threads. Decoded pixmaps are handed to the asset manager as prepared
+ * texture data, so the manager only uploads them on the rendering thread,
+ * within a time budget per frame. The textures are then retrieved through
+ * the manager like any other texture, and unloaded once every reference
+ * taken through the pipeline has been released.
+ */
+public class TexturePipeline {
+  /** Default time budget for texture uploads per frame, in milliseconds */
+  public static final int DEFAULT_UPLOAD_BUDGET = 4;
+  /** Number of worker threads for decoding */
+  private static final int WORKER_COUNT = Math.max(1, Runtime.getRuntime().availableProcessors());
+
+  /**
+   * Class holding a decoded texture waiting for upload.
+   */
+  private static class Decoded {
+    /** Asset path of the texture */
+    public String path;
+    /** File of the texture */
+    public FileHandle file;
+    /** Size of the file in bytes */
+    public long bytes;
+    /** The decoded pixmap, or null if decoding failed */
+    public Pixmap pixmap;
+    /** The decoding error, if any */
+    public Throwable error;
+  }
+
+  /** The asset manager receiving the uploaded textures */
+  private AssetManager manager;
+  /** Worker pool for decoding, created on first use */
+  private ExecutorService workers;
+  /** Decoded textures waiting for upload, filled by the workers */
+  private LinkedBlockingQueue<Decoded> decoded;
+  /** Number of references to each texture loaded through the pipeline */
+  private ObjectIntMap<String> refs;
+  /** Paths of the textures queued but not yet handed to the asset manager */
+  private ObjectSet<String> pending;
+  /** Textures handed to the asset manager but not yet uploaded */
+  private Array<Decoded> uploading;
+  /** Time budget for texture uploads per frame, in milliseconds */
+  private int uploadBudget;
+  /** Total size of the queued texture files in bytes */
+  private long totalBytes;
+  /** Size of the uploaded texture files in bytes */
+  private long loadedBytes;
+
+  /** The singleton instance of the pipeline */
+  private static TexturePipeline pipeline = null;
+
+  /**
+   * Returns the singleton instance of the pipeline.
+   */
+  public static TexturePipeline getInstance() {
+    if (pipeline == null) {
+      pipeline = new TexturePipeline();
+    }
+    return pipeline;
+  }
+
+  /**
+   * Creates a new texture pipeline. Only used to create the singleton.
+   */
+  private TexturePipeline() {
+    decoded = new LinkedBlockingQueue<Decoded>();
+    refs = new ObjectIntMap<String>();
+    pending = new ObjectSet<String>();
+    uploading = new Array<Decoded>();
+    uploadBudget = DEFAULT_UPLOAD_BUDGET;
+  }
+
+  /**
+   * Sets the asset manager receiving the uploaded textures.
+   */
+  public void setManager(AssetManager manager) {
+    this.manager = manager;
+  }
+
+  /**
+   * Sets the time budget for texture uploads per frame.
+   * @param uploadBudget budget in milliseconds
+   */
+  public void setUploadBudget(int uploadBudget) {
+    this.uploadBudget = uploadBudget;
+  }
+
+  /**
+   * Adds a reference to the texture at the given internal path, queueing it
+   * for decoding unless it is already queued or in the asset manager.
+   * @param path internal path of the texture
+   */
+  public void load(String path) {
+    if (refs.getAndIncrement(path, 0, 1) > 0 || pending.contains(path) || manager.contains(path)) {
+      return;
+    }
+    if (workers == null) {
+      workers = Executors.newFixedThreadPool(WORKER_COUNT, new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+          Thread thread = new Thread(runnable, "TexturePipeline");
+          thread.setDaemon(true);
+          return thread;
+        }
+      });
+    }
+    final Decoded item = new Decoded();
+    item.path = path;
+    item.file = Gdx.files.internal(path);
+    item.bytes = item.file.length();
+    pending.add(path);
+    totalBytes += item.bytes;
+    workers.execute(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          item.pixmap = new Pixmap(item.file);
+        } catch (Throwable e) {
+          item.error = e;
+        }
+        decoded.add(item);
+      }
+    });
+  }
+
+  /**
+   * Removes a reference to the texture at the given path, unloading it from
+   * the asset manager once no references remain. A texture still queued in
+   * the manager is dropped without uploading, so its pixmap is disposed here.
+   * @param path internal path of the texture
+   */
+  public void unload(String path) {
+    int count = refs.get(path, 0);
+    if (count > 1) {
+      refs.put(path, count - 1);
+      return;
+    }
+    refs.remove(path, 0);
+    if (count == 1 && manager.contains(path)) {
+      manager.unload(path);
+    }
+    for (int i = uploading.size - 1; i >= 0; i--) {
+      Decoded item = uploading.get(i);
+      if (item.path.equals(path)) {
+        uploading.removeIndex(i);
+        totalBytes -= item.bytes;
+        if (!manager.contains(path) && !item.pixmap.isDisposed()) {
+          item.pixmap.dispose();
+        }
+      }
+    }
+  }
+
+  /**
+   * Hands the decoded textures to the asset manager and updates the manager
+   * until the upload budget for this frame is spent. This is the only place
+   * the asset manager is updated, and should be called once per frame.
+   * @return whether every queued texture and manager asset has been loaded
+   */
+  public boolean update() {
+    for (Decoded item = decoded.poll(); item != null; item = decoded.poll()) {
+      handOff(item);
+    }
+    boolean finished = manager.update(uploadBudget);
+    for (int i = uploading.size - 1; i >= 0; i--) {
+      Decoded item = uploading.get(i);
+      if (manager.isLoaded(item.path)) {
+        loadedBytes += item.bytes;
+        uploading.removeIndex(i);
+      }
+    }
+    return finished && isFinished();
+  }
+
+  /**
+   * Blocks until every queued texture has been uploaded, ignoring the upload budget.
+   */
+  public void finishLoading() {
+    while (pending.size > 0) {
+      try {
+        handOff(decoded.take());
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new RuntimeException("Interrupted while decoding textures", e);
+      }
+    }
+    for (Decoded item : uploading) {
+      manager.finishLoadingAsset(item.path);
+      loadedBytes += item.bytes;
+    }
+    uploading.clear();
+  }
+
+  /**
+   * Blocks until the texture at the given path has been uploaded, ignoring the
+   * upload budget. Other textures decoded meanwhile are handed to the asset
+   * manager but not uploaded.
+   * @param path internal path of a texture loaded through the pipeline
+   */
+  public void finishLoading(String path) {
+    while (pending.contains(path)) {
+      try {
+        handOff(decoded.take());
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new RuntimeException("Interrupted while decoding texture " + path, e);
+      }
+    }
+    for (int i = uploading.size - 1; i >= 0; i--) {
+      Decoded item = uploading.get(i);
+      if (item.path.equals(path)) {
+        manager.finishLoadingAsset(path);
+        loadedBytes += item.bytes;
+        uploading.removeIndex(i);
+      }
+    }
+  }
+
+  /**
+   * Returns the texture at the given path if it has been uploaded, or null otherwise.
+   * @param path internal path of a texture loaded through the pipeline
+   */
+  public Texture get(String path) {
+    return manager.isLoaded(path) ? manager.get(path, Texture.class) : null;
+  }
+
+  /**
+   * Queues a decoded texture in the asset manager as prepared texture data,
+   * or discards it if every reference was released while it was decoding.
+   */
+  private void handOff(Decoded item) {
+    pending.remove(item.path);
+    if (item.error != null) {
+      throw new RuntimeException("Could not load texture " + item.path, item.error);
+    }
+    if (!refs.containsKey(item.path)) {
+      item.pixmap.dispose();
+      totalBytes -= item.bytes;
+      return;
+    }
+    TextureLoader.TextureParameter params = new TextureLoader.TextureParameter();
+    params.textureData = new FileTextureData(item.file, item.pixmap, null, false);
+    manager.load(item.path, Texture.class, params);
+    uploading.add(item);
+  }
+
+  /**
+   * Returns whether every queued texture has been uploaded.
+   */
+  public boolean isFinished() {
+    return pending.size == 0 && uploading.size == 0;
+  }
+
+  /**
+   * Returns the fraction of queued texture bytes that have been uploaded.
+   */
+  public float getProgress() {
+    return totalBytes == 0 ? 1 : (float)loadedBytes / totalBytes;
+  }
+
+  /**
+   * Returns the total size of the queued texture files in bytes.
+   */
+  public long getTotalBytes() {
+    return totalBytes;
+  }
+
+  /**
+   * Stops the worker threads and disposes any textures decoded but not uploaded.
+   */
+  public void dispose() {
+    if (workers != null) {
+      workers.shutdownNow();
+      workers = null;
+    }
+    for (Decoded item = decoded.poll(); item != null; item = decoded.poll()) {
+      if (item.pixmap != null) {
+        item.pixmap.dispose();
+      }
+    }
+    pending.clear();
+    uploading.clear();
+    refs.clear();
+  }
+}
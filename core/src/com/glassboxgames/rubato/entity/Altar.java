@@ -23,6 +23,7 @@ public class Altar extends Entity {
    */
   public Altar(float x, float y) {
     super(x, y, STATE_DEFAULT);
+    kind = KIND_ALTAR;
     bodyDef.type = BodyDef.BodyType.StaticBody;
   }
 
@@ -1,6 +1,5 @@
 package com.glassboxgames.rubato.entity;
 
-import com.badlogic.gdx.*;
 import com.badlogic.gdx.graphics.g2d.*;
 import com.badlogic.gdx.math.*;
 import com.badlogic.gdx.physics.box2d.*;
@@ -15,6 +14,9 @@ public class Checkpoint extends Entity {
   public static final int STATE_INACTIVE = 0;
   public static final int STATE_ACTIVE = 1;
   
+  /** File name of the active particle effect */
+  public static final String ACTIVE_EFFECT = "checkpoint.pe";
+
   /** Checkpoint states */
   public static Array<State> states = null;
   
@@ -23,8 +25,8 @@ public class Checkpoint extends Entity {
   /** How many frames checkpoint has been activated for */
   public float activatedFrames = 0;
 
-  /** Particle effects */
-  private ParticleEffect activeEffect;
+  /** Particle effect shown while active, obtained on activation */
+  private ParticleEffectPool.PooledEffect activeEffect;
 
   /**
    * Initializes a checkpoint with the specified parameters.
@@ -33,13 +35,8 @@ public class Checkpoint extends Entity {
    */
   public Checkpoint(float x, float y) {
     super(x, y, STATE_INACTIVE);
+    kind = KIND_CHECKPOINT;
     bodyDef.type = BodyDef.BodyType.StaticBody;
-    activeEffect = new ParticleEffect();
-    activeEffect.load(Gdx.files.internal("Particles/checkpoint.pe"), Gdx.files.internal("Particles"));
-    activeEffect.scaleEffect(1f);
-    // these values are the height and width of the pillar / 2
-    activeEffect.getEmitters().first().setPosition(x-0.24f, y-0.64f);
-    activeEffect.getEmitters().get(1).setPosition(x-0.24f, y-0.64f);
   }
 
   /**
@@ -67,6 +64,7 @@ public class Checkpoint extends Entity {
     case STATE_INACTIVE:
       if (activated) {
         setState(STATE_ACTIVE);
+        activeEffect = ParticleController.getInstance().obtain(ACTIVE_EFFECT);
         activeEffect.start();
       }
       break;
@@ -78,10 +76,10 @@ public class Checkpoint extends Entity {
     super.update(delta);
     if (activated) {
       activatedFrames++;
+    }
+    if (activeEffect != null) {
       Vector2 pos = getPosition().sub(0.25f, 0.65f).scl(Shared.PPM);
-      for (ParticleEmitter emitter : activeEffect.getEmitters()) {
-        emitter.setPosition(pos.x, pos.y);
-      }
+      activeEffect.setPosition(pos.x, pos.y);
       activeEffect.update(delta);
       if (activeEffect.isComplete()) {
         activeEffect.reset();
@@ -103,10 +101,24 @@ public class Checkpoint extends Entity {
     return stateIndex == STATE_ACTIVE;
   }
 
+  @Override
+  public void deactivatePhysics(World world) {
+    super.deactivatePhysics(world);
+    if (activeEffect != null) {
+      activeEffect.free();
+      activeEffect = null;
+    }
+  }
+
+  @Override
+  public boolean isVisible(Rectangle view) {
+    return activated || super.isVisible(view);
+  }
+
   @Override
   public void draw(GameCanvas canvas) {
     super.draw(canvas);
-    if (activated) {
+    if (activeEffect != null) {
       canvas.drawParticleEffect(activeEffect);
     }
   }
@@ -0,0 +1,104 @@
+package com.glassboxgames.rubato.entity;
+
+/**
+ * Collision layer matrix used to cull irrelevant fixture pairs in the Box2D broadphase.
+ * Each collider is assigned a layer from its entity kind and collider type, and two
+ * fixtures only generate a contact if their layers are listed as interacting.
+ */
+public class CollisionFilter {
+  /** Player hurtbox */
+  public static final short PLAYER_BODY = 1 << 0;
+  /** Player attack hitbox */
+  public static final short PLAYER_HITBOX = 1 << 1;
+  /** Player sensors (ground) */
+  public static final short PLAYER_SENSOR = 1 << 2;
+  /** Enemy hurtbox */
+  public static final short ENEMY_BODY = 1 << 3;
+  /** Enemy and projectile hitbox */
+  public static final short ENEMY_HITBOX = 1 << 4;
+  /** Enemy terrain sensors (ground, edges, ahead, behind) */
+  public static final short ENEMY_SENSOR = 1 << 5;
+  /** Enemy vision sensor */
+  public static final short ENEMY_VISION = 1 << 6;
+  /** Platform hurtbox */
+  public static final short PLATFORM_BODY = 1 << 7;
+  /** Spike hitbox */
+  public static final short PLATFORM_HITBOX = 1 << 8;
+  /** Checkpoint, altar and tooltip hurtbox */
+  public static final short OBJECT_BODY = 1 << 9;
+  /** Checkpoint, altar and tooltip sensors */
+  public static final short OBJECT_SENSOR = 1 << 10;
+  /** Level boundary walls */
+  public static final short WALL = 1 << 11;
+  /** Number of layers */
+  private static final int LAYER_COUNT = 12;
+
+  /** Pairs of layers that generate contacts with each other */
+  private static final short[][] INTERACTIONS = {
+    // solid bodies
+    {PLAYER_BODY, ENEMY_BODY},
+    {PLAYER_BODY, PLATFORM_BODY},
+    {PLAYER_BODY, OBJECT_BODY},
+    {ENEMY_BODY, ENEMY_BODY},
+    {ENEMY_BODY, PLATFORM_BODY},
+    {ENEMY_BODY, OBJECT_BODY},
+    {PLAYER_BODY, WALL},
+    {ENEMY_BODY, WALL},
+    // attacks
+    {PLAYER_HITBOX, ENEMY_BODY},
+    {PLAYER_HITBOX, ENEMY_HITBOX},
+    {ENEMY_HITBOX, PLAYER_BODY},
+    {ENEMY_HITBOX, ENEMY_BODY},
+    {ENEMY_HITBOX, PLATFORM_BODY},
+    {PLATFORM_HITBOX, PLAYER_BODY},
+    // sensors
+    {PLAYER_SENSOR, ENEMY_BODY},
+    {PLAYER_SENSOR, PLATFORM_BODY},
+    {ENEMY_SENSOR, ENEMY_BODY},
+    {ENEMY_SENSOR, PLATFORM_BODY},
+    {ENEMY_VISION, PLAYER_BODY},
+    {OBJECT_SENSOR, PLAYER_BODY},
+  };
+
+  /** Mask bits for each layer, indexed by bit position */
+  private static final short[] masks = new short[LAYER_COUNT];
+
+  static {
+    for (short[] pair : INTERACTIONS) {
+      masks[Integer.numberOfTrailingZeros(pair[0])] |= pair[1];
+      masks[Integer.numberOfTrailingZeros(pair[1])] |= pair[0];
+    }
+  }
+
+  /**
+   * Returns the layer of a collider with the given entity kind and collider type.
+   */
+  public static short getCategory(int kind, Entity.Collider.Type type) {
+    switch (kind) {
+    case Entity.KIND_PLAYER:
+      switch (type) {
+      case HURTBOX: return PLAYER_BODY;
+      case HITBOX: return PLAYER_HITBOX;
+      default: return PLAYER_SENSOR;
+      }
+    case Entity.KIND_ENEMY:
+      switch (type) {
+      case HURTBOX: return ENEMY_BODY;
+      case HITBOX: return ENEMY_HITBOX;
+      case VISION: return ENEMY_VISION;
+      default: return ENEMY_SENSOR;
+      }
+    case Entity.KIND_PLATFORM:
+      return type == Entity.Collider.Type.HITBOX ? PLATFORM_HITBOX : PLATFORM_BODY;
+    default:
+      return type == Entity.Collider.Type.HURTBOX ? OBJECT_BODY : OBJECT_SENSOR;
+    }
+  }
+
+  /**
+   * Returns the mask bits of the given layer.
+   */
+  public static short getMask(short category) {
+    return masks[Integer.numberOfTrailingZeros(category)];
+  }
+}
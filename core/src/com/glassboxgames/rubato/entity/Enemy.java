@@ -10,9 +10,8 @@ import com.glassboxgames.rubato.*;
  * Abstract class to represent any enemy in Rubato.
  */
 public abstract class Enemy extends Entity {
-  /** Desaturation shader */
-  private static final ShaderProgram DESAT_SHADER =
-    new ShaderProgram(Gdx.files.internal("Shaders/desat.vsr"), Gdx.files.internal("Shaders/desat.fsr"));
+  /** Desaturation shader, compiled on first draw */
+  private static ShaderProgram desatShader = null;
 
   /** Represent the previous position of the enemy */
   private Vector2 prevPosition = new Vector2(0, 0);
@@ -29,8 +28,8 @@ public abstract class Enemy extends Entity {
   private boolean remove;
   /** Current health */
   private float health;
-  /** Current target coordinates */
-  private Vector2 target;
+  /** Current target entity */
+  private Entity target;
 
   /**
    * Initializes an enemy with the specified parameters.
@@ -40,6 +39,7 @@ public abstract class Enemy extends Entity {
    */
   public Enemy(float x, float y, int i) {
     super(x, y, i);
+    kind = KIND_ENEMY;
     health = getMaxHealth();
   }
 
@@ -64,17 +64,18 @@ public abstract class Enemy extends Entity {
   }
 
   /**
-   * Sets the target of this enemy.
+   * Sets the entity targeted by this enemy, or null to clear the target.
    */
-  public void setTarget(Vector2 target) {
-    this.target = target == null ? null : new Vector2(target);
+  public void setTarget(Entity target) {
+    this.target = target;
   }
 
   /**
-   * Returns this enemy's target.
+   * Returns the current position of this enemy's target.
+   * Always returns a copy in the same vector.
    */
   public Vector2 getTarget() {
-    return target == null ? null : targetCache.set(target);
+    return target == null ? null : targetCache.set(target.getPosition());
   }
 
   @Override
@@ -117,8 +118,12 @@ public abstract class Enemy extends Entity {
    */
   public void draw(GameCanvas canvas) {
     if (isSuspended()) {
+      if (desatShader == null) {
+        desatShader = new ShaderProgram(Gdx.files.internal("Shaders/desat.vsr"),
+                                        Gdx.files.internal("Shaders/desat.fsr"));
+      }
       ShaderProgram temp = canvas.getShader();
-      canvas.setShader(DESAT_SHADER);
+      canvas.setShader(desatShader);
       super.draw(canvas);
       canvas.setShader(temp);
     } else {
@@ -2,6 +2,7 @@ package com.glassboxgames.rubato.entity;
 
 import com.badlogic.gdx.*;
 import com.badlogic.gdx.graphics.*;
+import com.badlogic.gdx.graphics.g2d.*;
 import com.badlogic.gdx.math.*;
 import com.badlogic.gdx.physics.box2d.*;
 import com.badlogic.gdx.utils.*;
@@ -12,6 +13,21 @@ import com.glassboxgames.util.*;
  * Abstract class representing a textured entity.
  */
 public abstract class Entity {
+  /** Entity kind of the player */
+  public static final int KIND_PLAYER = 0;
+  /** Entity kind of enemies and their projectiles */
+  public static final int KIND_ENEMY = 1;
+  /** Entity kind of platforms and spikes */
+  public static final int KIND_PLATFORM = 2;
+  /** Entity kind of checkpoints */
+  public static final int KIND_CHECKPOINT = 3;
+  /** Entity kind of altars */
+  public static final int KIND_ALTAR = 4;
+  /** Entity kind of tooltips */
+  public static final int KIND_TOOLTIP = 5;
+  /** Number of entity kinds */
+  public static final int KIND_COUNT = 6;
+
   /** The body definition for this entity */
   protected BodyDef bodyDef;
   /** The body for this entity */
@@ -22,6 +38,10 @@ public abstract class Entity {
   protected Array<Collider> hurtboxes;
   /** Sensor colliders for this entity */
   protected ObjectMap<String, Collider> sensors;
+  /** Colliders whose fixtures were destroyed, kept for reuse */
+  private Array<Collider> freeColliders;
+  /** Kind of this entity, used for collision filtering */
+  protected int kind;
   /** Direction the entity is facing (1 for right, -1 for left) */
   protected int dir;
   /** Current entity state, represented as an integer */
@@ -30,6 +50,21 @@ public abstract class Entity {
   protected int initIndex;
   /** Number of frames spent in current state */
   protected float count;
+  /** Whether this entity is dormant (outside the active region of the level) */
+  private boolean dormant;
+  /** State index the current colliders were built for, or -1 if none */
+  private int syncedIndex = -1;
+  /** Animation frame the current colliders were built for */
+  private int syncedFrame;
+  /** Direction the current colliders were built for */
+  private int syncedDir;
+
+  /** Number of fixtures created since the last counter reset */
+  private static int fixturesCreated;
+  /** Number of fixtures destroyed since the last counter reset */
+  private static int fixturesDestroyed;
+  /** Collider type of each sensor name, cached to avoid string conversion */
+  private static final ObjectMap<String, Collider.Type> sensorTypes = new ObjectMap<String, Collider.Type>();
 
   /** Temp vector for calculations */
   protected Vector2 temp = new Vector2();
@@ -37,6 +72,10 @@ public abstract class Entity {
   private Vector2 posCache = new Vector2();
   /** Cache for velocity vector */
   private Vector2 velCache = new Vector2();
+  /** Position at the start of the current simulation tick */
+  private Vector2 prevPos = new Vector2();
+  /** Position interpolated between the last two simulation ticks */
+  private Vector2 drawPos = new Vector2();
 
   /**
    * Instantiates a new entity with the given parameters.
@@ -59,6 +98,9 @@ public abstract class Entity {
     hitboxes = new Array<Collider>();
     hurtboxes = new Array<Collider>();
     sensors = new ObjectMap<String, Collider>();
+    freeColliders = new Array<Collider>();
+    prevPos.set(x, y);
+    drawPos.set(x, y);
   }
 
   /**
@@ -66,6 +108,21 @@ public abstract class Entity {
    */
   public abstract Array<State> getStates();
 
+  /**
+   * Adds the states whose textures this entity needs while in a level.
+   * @param used set of states to add to
+   */
+  public void addUsedStates(ObjectSet<State> used) {
+    used.addAll(getStates());
+  }
+
+  /**
+   * Returns the kind of this entity.
+   */
+  public int getKind() {
+    return kind;
+  }
+
   /**
    * Returns the angle.
    */
@@ -74,10 +131,10 @@ public abstract class Entity {
   }
 
   /**
-   * Returns the texture.
+   * Returns the texture region of the current frame.
    */
-  public Texture getTexture() {
-    return getState().getTexture(getCount());
+  public TextureRegion getRegion() {
+    return getState().getRegion(getCount());
   }
 
   /**
@@ -99,6 +156,28 @@ public abstract class Entity {
     }
   }
 
+  /**
+   * Records the current position as the start of a new simulation tick.
+   */
+  public void storePosition() {
+    prevPos.set(getPosition());
+  }
+
+  /**
+   * Interpolates the draw position between the previous and current tick.
+   * @param alpha fraction of a tick elapsed since the current tick (0 to 1)
+   */
+  public void interpolate(float alpha) {
+    drawPos.set(prevPos).lerp(getPosition(), alpha);
+  }
+
+  /**
+   * Returns the interpolated draw position. Always returns a copy in the same vector.
+   */
+  public Vector2 getDrawPosition() {
+    return posCache.set(drawPos);
+  }
+
   /**
    * Returns the velocity vector. Always returns a copy in the same vector.
    */
@@ -149,12 +228,36 @@ public abstract class Entity {
     dir *= -1;
   }
 
+  /**
+   * Sets whether this entity is dormant. A dormant entity's body is removed
+   * from the simulation but keeps its position, velocity and entity state.
+   */
+  public void setDormant(boolean value) {
+    if (dormant != value) {
+      dormant = value;
+      if (body != null) {
+        body.setActive(!value);
+      }
+    }
+  }
+
+  /**
+   * Returns whether this entity is dormant.
+   */
+  public boolean isDormant() {
+    return dormant;
+  }
+
   /**
    * Adds this entity as a physics object in the given world.
    */
   public boolean activatePhysics(World world) {
     body = world.createBody(bodyDef);
+    syncedIndex = -1;
+    dormant = false;
     setState(initIndex);
+    storePosition();
+    interpolate(1);
     return body != null;
   }
 
@@ -167,51 +270,56 @@ public abstract class Entity {
       body = null;
       bodyDef.active = false;
     }
+    releaseColliders();
+    syncedIndex = -1;
   }
 
   /**
-   * Reflects a shape horizontally across its origin.
+   * Clears the collider arrays, keeping the colliders for reuse.
+   * Their fixtures must already be destroyed.
    */
-  private Shape reflectShape(Shape shape) {
-    if (shape instanceof PolygonShape) {
-      PolygonShape pShape = (PolygonShape)shape;
-      PolygonShape newShape = new PolygonShape();
-      int n = pShape.getVertexCount();
-      Vector2[] vertices = new Vector2[n];
-      for (int i = 0; i < n; i++) {
-        Vector2 vertex = new Vector2();
-        pShape.getVertex(i, vertex);
-        vertex.scl(-1, 1);
-        vertices[i] = vertex;
+  private void releaseColliders() {
+    freeColliders.addAll(hitboxes);
+    freeColliders.addAll(hurtboxes);
+    if (sensors.size > 0) {
+      for (Collider sensor : sensors.values()) {
+        freeColliders.add(sensor);
       }
-      newShape.set(vertices);
-      return newShape;
-    } else if (shape instanceof CircleShape) {
-      CircleShape newShape = new CircleShape();
-      newShape.setRadius(shape.getRadius());
-      newShape.setPosition(((CircleShape)shape).getPosition().scl(-1, 1));
-      return newShape;
     }
-    return null;
+    hitboxes.clear();
+    hurtboxes.clear();
+    sensors.clear();
+  }
+
+  /**
+   * Returns the collider type of the sensor with the given name.
+   */
+  private static Collider.Type getSensorType(String name) {
+    Collider.Type type = sensorTypes.get(name);
+    if (type == null) {
+      type = Collider.Type.valueOf(name.toUpperCase());
+      sensorTypes.put(name, type);
+    }
+    return type;
   }
 
   /**
    * Creates a collider with the given fixture definition.
    */
-  private Collider createCollider(FixtureDef def, Collider.Type type) {
-    Fixture fixture;
-    if (dir < 0) {
-      FixtureDef newDef = new FixtureDef();
-      newDef.density = def.density;
-      newDef.friction = def.friction;
-      newDef.isSensor = def.isSensor;
-      newDef.shape = reflectShape(def.shape);
-      fixture = body.createFixture(newDef);
+  protected Collider createCollider(FixtureDef def, Collider.Type type) {
+    short category = CollisionFilter.getCategory(kind, type);
+    def.filter.categoryBits = category;
+    def.filter.maskBits = CollisionFilter.getMask(category);
+    Fixture fixture = body.createFixture(def);
+    Collider collider;
+    if (freeColliders.size > 0) {
+      collider = freeColliders.pop();
+      collider.set(this, fixture, type);
     } else {
-      fixture = body.createFixture(def);
+      collider = new Collider(this, fixture, type);
     }
-    Collider collider = new Collider(this, fixture, type);
     fixture.setUserData(collider);
+    fixturesCreated++;
     return collider;
   }
   
@@ -237,34 +345,72 @@ public abstract class Entity {
 
   /**
    * Recreates this entity's colliders based on the current entity state.
+   * Does nothing if the state, animation frame and direction are unchanged
+   * since the last sync, so that contacts persist across ticks.
    */
   public void sync() {
-    for (Collider hitbox : hitboxes) {
-      body.destroyFixture(hitbox.getFixture());
+    State state = getState();
+    int frame = state.getFrameIndex(getCount());
+    if (stateIndex == syncedIndex && frame == syncedFrame && dir == syncedDir) {
+      return;
     }
-    for (Collider hurtbox : hurtboxes) {
-      body.destroyFixture(hurtbox.getFixture());
+    syncedIndex = stateIndex;
+    syncedFrame = frame;
+    syncedDir = dir;
+
+    // Indexed loops, since sync runs every tick and iterators are allocated lazily per array
+    fixturesDestroyed += hitboxes.size + hurtboxes.size + sensors.size;
+    for (int i = 0; i < hitboxes.size; i++) {
+      body.destroyFixture(hitboxes.get(i).getFixture());
     }
-    for (Collider sensor : sensors.values()) {
-      body.destroyFixture(sensor.getFixture());
+    for (int i = 0; i < hurtboxes.size; i++) {
+      body.destroyFixture(hurtboxes.get(i).getFixture());
     }
-    hitboxes.clear();
-    hurtboxes.clear();
-    sensors.clear();
+    if (sensors.size > 0) {
+      for (Collider sensor : sensors.values()) {
+        body.destroyFixture(sensor.getFixture());
+      }
+    }
+    releaseColliders();
 
-    State state = getState();
-    for (FixtureDef def : state.getHurtboxDefs(getCount())) {
-      hurtboxes.add(createCollider(def, Collider.Type.HURTBOX));
+    Array<FixtureDef> hurtboxDefs = state.getHurtboxDefs(getCount(), dir);
+    for (int i = 0; i < hurtboxDefs.size; i++) {
+      hurtboxes.add(createCollider(hurtboxDefs.get(i), Collider.Type.HURTBOX));
     }
-    for (FixtureDef def : state.getHitboxDefs(getCount())) {
-      hitboxes.add(createCollider(def, Collider.Type.HITBOX));
+    Array<FixtureDef> hitboxDefs = state.getHitboxDefs(getCount(), dir);
+    for (int i = 0; i < hitboxDefs.size; i++) {
+      hitboxes.add(createCollider(hitboxDefs.get(i), Collider.Type.HITBOX));
     }
-    ObjectMap<String, FixtureDef> sensorDefs = state.getSensorDefs(getCount());
-    for (String name : sensorDefs.keys()) {
-      sensors.put(name, createCollider(sensorDefs.get(name), Collider.Type.valueOf(name.toUpperCase())));
+    ObjectMap<String, FixtureDef> sensorDefs = state.getSensorDefs(getCount(), dir);
+    if (sensorDefs.size > 0) {
+      for (ObjectMap.Entry<String, FixtureDef> entry : sensorDefs.entries()) {
+        sensors.put(entry.key, createCollider(entry.value, getSensorType(entry.key)));
+      }
     }
   }
 
+  /**
+   * Returns the number of fixtures created since the last counter reset.
+   */
+  public static int getFixturesCreated() {
+    return fixturesCreated;
+  }
+
+  /**
+   * Returns the number of fixtures destroyed since the last counter reset.
+   */
+  public static int getFixturesDestroyed() {
+    return fixturesDestroyed;
+  }
+
+  /**
+   * Resets the fixture creation and destruction counters.
+   */
+  public static void resetFixtureCounts() {
+    fixturesCreated = 0;
+    fixturesDestroyed = 0;
+  }
+
   /**
    * Returns the internal animation count (float).
    */
@@ -323,16 +469,29 @@ public abstract class Entity {
    * Draws this entity to the given canvas.
    */
   public void draw(GameCanvas canvas) {
-    Texture texture = getTexture();
-    float w = texture.getWidth();
-    float h = texture.getHeight();
-    Vector2 pos = getPosition().scl(Shared.PPM);
-    canvas.draw(texture, Color.WHITE,
+    TextureRegion region = getRegion();
+    float w = region.getRegionWidth();
+    float h = region.getRegionHeight();
+    Vector2 pos = getDrawPosition().scl(Shared.PPM);
+    canvas.draw(region, Color.WHITE,
                 dir * w / 2, h / 2,
                 pos.x, pos.y,
                 dir * w, h);
   }
 
+  /**
+   * Returns whether the current frame, drawn at the interpolated position,
+   * overlaps the given rectangle. All units are in pixels.
+   */
+  public boolean isVisible(Rectangle view) {
+    TextureRegion region = getRegion();
+    Vector2 pos = getDrawPosition().scl(Shared.PPM);
+    float w = region.getRegionWidth() / 2f;
+    float h = region.getRegionHeight() / 2f;
+    return pos.x + w > view.x && pos.x - w < view.x + view.width
+      && pos.y + h > view.y && pos.y - h < view.y + view.height;
+  }
+
   /**
    * Draws a hitbox/hurtbox shape to the canvas.
    */
@@ -381,12 +540,19 @@ public abstract class Entity {
       CENTER,
     }
 
+    /** Number of collider types */
+    public static final int TYPE_COUNT = Type.values().length;
+    /** Number of distinct (entity kind, collider type) slots */
+    public static final int SLOT_COUNT = KIND_COUNT * TYPE_COUNT;
+
     /** The entity involved in the collision */
     public Entity entity;
     /** The fixture of the entity that collided */
     public Fixture fixture;
     /** The type of the involved collider */
     public Type type;
+    /** Index of the (entity kind, collider type) pair of this collider */
+    public int slot;
 
     /**
      * Instantiates a collider object.
@@ -395,9 +561,24 @@ public abstract class Entity {
      * @param type
      */
     public Collider(Entity entity, Fixture fixture, Type type) {
+      set(entity, fixture, type);
+    }
+
+    /**
+     * Reinitializes this collider for a new fixture.
+     */
+    public void set(Entity entity, Fixture fixture, Type type) {
       this.entity = entity;
       this.fixture = fixture;
       this.type = type;
+      slot = getSlot(entity.getKind(), type);
+    }
+
+    /**
+     * Returns the slot index of the given entity kind and collider type.
+     */
+    public static int getSlot(int kind, Type type) {
+      return kind * TYPE_COUNT + type.ordinal();
     }
 
     /**
@@ -33,6 +33,23 @@ public class Platform extends Entity {
     CRUMBLING,
   }
 
+  /** Biome enum, grouping the platform types whose textures are loaded together */
+  public enum Biome {
+    FOREST, PLAINS, DESERT, MOUNTAINS, WOOD_SPIKES, STONE_SPIKES, CRUMBLING,
+  }
+
+  /** Biome of each platform type, by type index */
+  private static final Biome[] TYPE_BIOMES = new Biome[Type.values().length];
+  static {
+    for (Type type : Type.values()) {
+      for (Biome biome : Biome.values()) {
+        if (type.name().startsWith(biome.name()) || type.name().endsWith(biome.name())) {
+          TYPE_BIOMES[type.ordinal()] = biome;
+        }
+      }
+    }
+  }
+
   /** Number of frames for a crumbling block to crumble */
   public static final int CRUMBLING_TIME = 90;
   
@@ -43,6 +60,8 @@ public class Platform extends Entity {
   private boolean visited;
   /** Whether this platform should be removed */
   private boolean remove;
+  /** Whether this platform's collider is merged into a platform group */
+  private boolean merged;
   
   /**
    * Initializes a platform with the specified parameters.
@@ -52,6 +71,7 @@ public class Platform extends Entity {
    */
   public Platform(float x, float y, int type) {
     super(x, y, type);
+    kind = KIND_PLATFORM;
     bodyDef.type = BodyDef.BodyType.StaticBody;
   }
 
@@ -67,6 +87,75 @@ public class Platform extends Entity {
     return states;
   }
 
+  /**
+   * Returns the biome of the given platform type.
+   * @param type the type index of the platform
+   */
+  public static Biome getBiome(int type) {
+    return TYPE_BIOMES[type];
+  }
+
+  @Override
+  public void addUsedStates(ObjectSet<State> used) {
+    if (used.contains(states.get(initIndex))) {
+      return;
+    }
+    Biome biome = getBiome(initIndex);
+    for (int i = 0; i < states.size; i++) {
+      if (getBiome(i) == biome) {
+        used.add(states.get(i));
+      }
+    }
+  }
+
+  /**
+   * Returns the type index of this platform.
+   */
+  public int getType() {
+    return initIndex;
+  }
+
+  /**
+   * Returns whether this platform is a solid tile whose collider may be merged
+   * with its neighbors. Spikes and crumbling platforms keep their own bodies.
+   */
+  public boolean isMergeable() {
+    return initIndex < Type.B_WOOD_SPIKES.ordinal();
+  }
+
+  /**
+   * Sets whether this platform's collider is merged into a platform group.
+   * A merged platform is still drawn but has no body of its own.
+   */
+  public void setMerged(boolean value) {
+    merged = value;
+  }
+
+  /**
+   * Returns whether this platform's collider is merged into a platform group.
+   */
+  public boolean isMerged() {
+    return merged;
+  }
+
+  @Override
+  public boolean activatePhysics(World world) {
+    if (merged) {
+      setState(initIndex);
+      storePosition();
+      interpolate(1);
+      return true;
+    }
+    return super.activatePhysics(world);
+  }
+
+  @Override
+  public void sync() {
+    if (!merged) {
+      super.sync();
+    }
+  }
+
   @Override
   public void update(float delta) {
     if (stateIndex == Type.CRUMBLING.ordinal()) {
@@ -0,0 +1,65 @@
+package com.glassboxgames.rubato.entity;
+
+import com.badlogic.gdx.physics.box2d.*;
+
+/**
+ * Class representing the combined collider of a rectangle of touching solid
+ * platform tiles. The tiles themselves are still drawn but have no bodies.
+ */
+public class PlatformGroup extends Platform {
+  /** Width of the merged collider */
+  private float width;
+  /** Height of the merged collider */
+  private float height;
+
+  /**
+   * Instantiates a platform group covering the given rectangle.
+   * @param x0 left edge
+   * @param y0 bottom edge
+   * @param x1 right edge
+   * @param y1 top edge
+   * @param type type index of a tile in the group, used for its fixture properties
+   */
+  public PlatformGroup(float x0, float y0, float x1, float y1, int type) {
+    super((x0 + x1) / 2, (y0 + y1) / 2, type);
+    width = x1 - x0;
+    height = y1 - y0;
+  }
+
+  /**
+   * Returns the width of the merged collider.
+   */
+  public float getWidth() {
+    return width;
+  }
+
+  /**
+   * Returns the height of the merged collider.
+   */
+  public float getHeight() {
+    return height;
+  }
+
+  @Override
+  public boolean activatePhysics(World world) {
+    if (!super.activatePhysics(world)) {
+      return false;
+    }
+    FixtureDef tileDef = getState().getHurtboxDefs(0, 1).first();
+    FixtureDef def = new FixtureDef();
+    def.density = tileDef.density;
+    def.friction = tileDef.friction;
+    PolygonShape shape = new PolygonShape();
+    shape.setAsBox(width / 2, height / 2);
+    def.shape = shape;
+    hurtboxes.add(createCollider(def, Collider.Type.HURTBOX));
+    shape.dispose();
+    return true;
+  }
+
+  @Override
+  public void update(float delta) {}
+
+  @Override
+  public void sync() {}
+}
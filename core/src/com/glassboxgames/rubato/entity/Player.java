@@ -1,6 +1,5 @@
 package com.glassboxgames.rubato.entity;
 
-import com.badlogic.gdx.*;
 import com.badlogic.gdx.graphics.g2d.*;
 import com.badlogic.gdx.math.*;
 import com.badlogic.gdx.physics.box2d.*;
@@ -44,6 +43,8 @@ public class Player extends Entity {
 
   /** Drain particle lifespan */
   private static final int DRAIN_DURATION = 30;
+  /** File name of the drain particle effect */
+  public static final String DRAIN_EFFECT = "drain.pe";
 
   /** Player state constants */
   public static final int STATE_IDLE = 0;
@@ -83,8 +84,10 @@ public class Player extends Entity {
   private ObjectSet<Enemy> enemiesHit;
   /** Entities that the player is currently using as ground */
   private ObjectSet<Entity> entitiesUnderfoot;
-  /** Set of drain particle effects */
-  private ObjectSet<DrainEffect> drainEffects;
+  /** Active drain particle effects */
+  private Array<Drain> drains;
+  /** Finished drain wrappers, kept for reuse */
+  private Array<Drain> freeDrains;
 
   /**
    * Instantiates a player with the given parameters.
@@ -93,12 +96,14 @@ public class Player extends Entity {
    */
   public Player(float x, float y) {
     super(x, y, STATE_IDLE);
+    kind = KIND_PLAYER;
     attackTime = -1;
     jumpTime = -1;
     jumpDuration = -1;
     enemiesHit = new ObjectSet<Enemy>();
     entitiesUnderfoot = new ObjectSet<Entity>();
-    drainEffects = new ObjectSet<DrainEffect>();
+    drains = new Array<Drain>();
+    freeDrains = new Array<Drain>();
     active = true;
   }
 
@@ -229,13 +234,13 @@ public class Player extends Entity {
    * Starts a drain particle effect from the given start position.
    */
   public void startDrain(Vector2 start) {
-    DrainEffect effect = new DrainEffect();
-    effect.load(Gdx.files.internal("Particles/drain.pe"), Gdx.files.internal("Particles"));
-    effect.start = new Vector2(start);
-    effect.pos = new Vector2(start);
-    effect.lifespan = DRAIN_DURATION;
-    effect.start();
-    drainEffects.add(effect);
+    Drain drain = freeDrains.size > 0 ? freeDrains.pop() : new Drain();
+    drain.effect = ParticleController.getInstance().obtain(DRAIN_EFFECT);
+    drain.start.set(start);
+    drain.pos.set(start);
+    drain.lifespan = DRAIN_DURATION;
+    drain.effect.start();
+    drains.add(drain);
   }
 
   /**
@@ -351,16 +356,13 @@ public class Player extends Entity {
   public void update(float delta) {
     super.update(delta);
 
-    Array<DrainEffect> toRemove = new Array<DrainEffect>();
-    for (DrainEffect effect : drainEffects) {
-      effect.update(delta);
-      if (effect.isComplete()) {
-        toRemove.add(effect);
+    for (int i = drains.size - 1; i >= 0; i--) {
+      Drain drain = drains.get(i);
+      if (!drain.update(delta)) {
+        drains.removeIndex(i);
+        freeDrains.add(drain);
       }
     }
-    for (DrainEffect effect : toRemove) {
-      drainEffects.remove(effect);
-    }
 
     if (stateIndex == STATE_DEAD) {
       body.setLinearVelocity(0, 0);
@@ -413,33 +415,52 @@ public class Player extends Entity {
     return super.activatePhysics(world);
   }
 
+  @Override
+  public void deactivatePhysics(World world) {
+    super.deactivatePhysics(world);
+    for (int i = 0; i < drains.size; i++) {
+      drains.get(i).effect.free();
+    }
+    freeDrains.addAll(drains);
+    drains.clear();
+  }
+
   @Override
   public void draw(GameCanvas canvas) {
     if (active) {
-      for (DrainEffect effect : drainEffects) {
-        canvas.drawParticleEffect(effect);
+      for (int i = 0; i < drains.size; i++) {
+        canvas.drawParticleEffect(drains.get(i).effect);
       }
       super.draw(canvas);
     }
   }
 
   /**
-   * Wrapper class for a drain particle effect.
+   * Wrapper class for a pooled drain particle effect.
    */
-  private class DrainEffect extends ParticleEffect {
+  private class Drain {
+    /** The particle effect, or null once returned to its pool */
+    public ParticleEffectPool.PooledEffect effect;
     /** Position of the particle effect */
-    public Vector2 pos;
+    public Vector2 pos = new Vector2();
     /** Starting position of the particle effect */
-    public Vector2 start;
+    public Vector2 start = new Vector2();
     /** Remaining lifespan */
     public int lifespan;
 
-    @Override
-    public void update(float delta) {
-      super.update(delta);
+    /**
+     * Updates the effect and moves it toward the player.
+     * @return whether the effect is still running
+     */
+    public boolean update(float delta) {
+      if (!ParticleController.getInstance().update(effect, delta)) {
+        effect = null;
+        return false;
+      }
       pos.set(start).add(getPosition().sub(start).scl(1 - (float)lifespan / DRAIN_DURATION));
-      setPosition(pos.x * Shared.PPM, pos.y * Shared.PPM);
+      effect.setPosition(pos.x * Shared.PPM, pos.y * Shared.PPM);
       lifespan--;
+      return true;
     }
   }
 }
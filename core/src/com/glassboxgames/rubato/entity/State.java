@@ -1,8 +1,13 @@
 package com.glassboxgames.rubato.entity;
 
+import java.nio.*;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import com.badlogic.gdx.*;
 import com.badlogic.gdx.assets.*;
+import com.badlogic.gdx.files.*;
 import com.badlogic.gdx.graphics.*;
+import com.badlogic.gdx.graphics.g2d.*;
 import com.badlogic.gdx.math.*;
 import com.badlogic.gdx.physics.box2d.*;
 import com.badlogic.gdx.utils.*;
@@ -16,7 +21,7 @@ public class State {
   /**
    * Class to represent state metadata for JSON serialization.
    */
-  private static class StateMetadata {
+  static class StateMetadata {
     public String name, path;
     public boolean loop;
   }
@@ -24,7 +29,7 @@ public class State {
   /**
    * Class to represent an animation frame for JSON serialization.
    */
-  private static class FrameData {
+  static class FrameData {
     public String file;
     public Array<Array<Float>> hitboxes;
     public Array<Array<Float>> hurtboxes;
@@ -36,125 +41,447 @@ public class State {
    */
   private static class Frame {
     public String path;
-    public Texture texture;
+    public String name;
+    public TextureRegion region;
     public Array<FixtureDef> hitboxDefs;
     public Array<FixtureDef> hurtboxDefs;
     public ObjectMap<String, FixtureDef> sensorDefs;
+    public Array<FixtureDef> mirroredHitboxDefs;
+    public Array<FixtureDef> mirroredHurtboxDefs;
+    public ObjectMap<String, FixtureDef> mirroredSensorDefs;
   }
 
   /** Filename of the state master file */
   protected static final String STATE_FILE = "states.json";
   /** Filename of the frame config file */
   protected static final String FRAME_FILE = "frames.json";
+  /** Directory of the atlases packed at build time by the packTextures task */
+  protected static final String ATLAS_DIR = "Atlases/";
+  /** Directory of the state files compiled at build time by the compileStates task */
+  protected static final String COMPILED_DIR = "States/";
+  /** Extension of a compiled state file */
+  protected static final String COMPILED_EXT = ".bin";
+  /** Magic number at the start of a compiled state file ("RBST") */
+  static final int COMPILED_MAGIC = 0x52425354;
+  /** Version of the compiled state format, bumped on every layout change */
+  static final int COMPILED_VERSION = 1;
   
+  /** Path of the texture atlas containing this state's frames */
+  protected String atlasPath;
   /** Whether to loop the animation */
   protected boolean loop;
-  /** Array of frame data */
-  protected Array<FrameData> frameDataList;
   /** Array of frames */
   protected Array<Frame> frames;
+  /** Number of holders of this state's textures */
+  private int refs;
 
   /**
-   * Creates an array of states from the given root path.
-   * Requires the presence of a `states.json` file at that path.
+   * Creates an array of states from the given root path. Reads the compiled
+   * state file if present and no newer than the JSON files it was compiled
+   * from, and otherwise requires the presence of a `states.json` file at
+   * that path.
    * @param path
    */
   public static Array<State> readStates(String path) {
-    Json json = new Json();
-    Array<StateMetadata> metadataList = json.fromJson(Array.class, StateMetadata.class,
-                                                      Gdx.files.internal(path + STATE_FILE));
+    String name = path.substring(0, path.length() - 1);
+    String atlasPath = ATLAS_DIR + name + ".atlas";
+    FileHandle compiled = Gdx.files.internal(COMPILED_DIR + name + COMPILED_EXT);
+    if (compiled.exists() && isNewer(Gdx.files.internal(path), compiled.lastModified())) {
+      Gdx.app.log("State", compiled.path() + " is older than the JSON under " + path + ", reading JSON");
+    } else if (compiled.exists()) {
+      try {
+        return readCompiledStates(path, atlasPath, ByteBuffer.wrap(compiled.readBytes()));
+      } catch (RuntimeException e) {
+        Gdx.app.error("State", "Failed to read " + compiled.path() + ", falling back to JSON", e);
+      }
+    }
     Array<State> states = new Array<State>();
-    for (StateMetadata metadata : metadataList) {
-      states.add(new State(path + metadata.path, metadata.loop));
+    for (StateMetadata metadata : readMetadata(Gdx.files.internal(path + STATE_FILE))) {
+      State state = new State(path, metadata.path, metadata.loop, atlasPath);
+      state.findSplitAtlas(path, metadata.path);
+      states.add(state);
     }
     return states;
   }
 
   /**
-   * Parses the given float array into a Box2D shape.
+   * Returns whether any state or frame file under the given directory was
+   * modified after the given time. Files packaged in a jar report no time,
+   * so a shipped build always reads its compiled state files.
+   * @param dir directory to search recursively
+   * @param time modification time in milliseconds
    */
-  private static Shape parseShape(Array<Float> params) {
-    if (params.size == 3) {
+  private static boolean isNewer(FileHandle dir, long time) {
+    for (FileHandle file : dir.list()) {
+      if (file.isDirectory()) {
+        if (isNewer(file, time)) {
+          return true;
+        }
+      } else if ((file.name().equals(STATE_FILE) || file.name().equals(FRAME_FILE))
+                 && file.lastModified() > time) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Creates an array of states from a compiled state file.
+   * @param root path to the directory containing all states of the entity
+   * @param atlasPath path to the texture atlas packed from the root directory
+   * @param buffer contents of the compiled state file
+   */
+  private static Array<State> readCompiledStates(String root, String atlasPath, ByteBuffer buffer) {
+    if (buffer.getInt() != COMPILED_MAGIC || buffer.getInt() != COMPILED_VERSION) {
+      throw new RuntimeException("Unsupported compiled state format");
+    }
+    int count = buffer.getShort();
+    Array<State> states = new Array<State>(count);
+    for (int i = 0; i < count; i++) {
+      String path = readString(buffer);
+      boolean loop = buffer.get() != 0;
+      State state = new State(loop, atlasPath);
+      state.readCompiledFrames(root, path, buffer);
+      state.findSplitAtlas(root, path);
+      states.add(state);
+    }
+    return states;
+  }
+
+  /**
+   * Parses the state metadata of an entity from its `states.json` file.
+   */
+  static Array<StateMetadata> readMetadata(FileHandle file) {
+    return new Json().fromJson(Array.class, StateMetadata.class, file);
+  }
+
+  /**
+   * Parses the frame data of a state from its `frames.json` file.
+   */
+  static Array<FrameData> readFrameData(FileHandle file) {
+    return new Json().fromJson(Array.class, FrameData.class, file.readString());
+  }
+
+  /**
+   * Reads a string written as a length-prefixed UTF-8 byte sequence.
+   */
+  private static String readString(ByteBuffer buffer) {
+    byte[] bytes = new byte[buffer.getShort() & 0xFFFF];
+    buffer.get(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Parses the given parameters into a Box2D shape.
+   * @param params array containing the parameters
+   * @param offset index of the first parameter
+   * @param count number of parameters
+   */
+  private static Shape parseShape(float[] params, int offset, int count) {
+    if (count == 3) {
       CircleShape shape = new CircleShape();
-      shape.setPosition(new Vector2(params.get(0), params.get(1)));
-      shape.setRadius(params.get(2));
+      shape.setPosition(new Vector2(params[offset], params[offset + 1]));
+      shape.setRadius(params[offset + 2]);
       return shape;
-    } else if (params.size == 5) {
+    } else if (count == 5) {
       PolygonShape shape = new PolygonShape();
-      shape.setAsBox(params.get(2) / 2, params.get(3) / 2,
-                     new Vector2(params.get(0), params.get(1)),
-                     params.get(4));
+      shape.setAsBox(params[offset + 2] / 2, params[offset + 3] / 2,
+                     new Vector2(params[offset], params[offset + 1]),
+                     params[offset + 4]);
       return shape;
-    } else if (params.size == 6) {
+    } else if (count == 6) {
       PolygonShape shape = new PolygonShape();
       float[] vertices = new float[6];
-      for (int i = 0; i < 6; i++) {
-        vertices[i] = params.get(i);
-      }
+      System.arraycopy(params, offset, vertices, 0, 6);
       shape.set(vertices);
       return shape;
     } else {
-      throw new RuntimeException("Found invalid parameters: " + params);
+      throw new RuntimeException("Found invalid parameters: "
+                                 + Arrays.toString(Arrays.copyOfRange(params, offset, offset + count)));
     }
   }
 
   /**
-   * Instantiates an entity state.
-   * @param path path to the directory containing the entity state data
+   * Parses the given float array into a Box2D shape.
+   */
+  private static Shape parseShape(Array<Float> params) {
+    float[] values = new float[params.size];
+    for (int i = 0; i < params.size; i++) {
+      values[i] = params.get(i);
+    }
+    return parseShape(values, 0, values.length);
+  }
+
+  /**
+   * Reflects a shape horizontally across its origin.
+   */
+  private static Shape reflectShape(Shape shape) {
+    if (shape instanceof PolygonShape) {
+      PolygonShape pShape = (PolygonShape)shape;
+      PolygonShape newShape = new PolygonShape();
+      int n = pShape.getVertexCount();
+      Vector2[] vertices = new Vector2[n];
+      for (int i = 0; i < n; i++) {
+        Vector2 vertex = new Vector2();
+        pShape.getVertex(i, vertex);
+        vertex.scl(-1, 1);
+        vertices[i] = vertex;
+      }
+      newShape.set(vertices);
+      return newShape;
+    } else if (shape instanceof CircleShape) {
+      CircleShape newShape = new CircleShape();
+      newShape.setRadius(shape.getRadius());
+      newShape.setPosition(((CircleShape)shape).getPosition().scl(-1, 1));
+      return newShape;
+    }
+    return null;
+  }
+
+  /**
+   * Returns a copy of the given fixture definition with its shape reflected horizontally.
+   */
+  private static FixtureDef mirrorDef(FixtureDef def) {
+    FixtureDef newDef = new FixtureDef();
+    newDef.density = def.density;
+    newDef.friction = def.friction;
+    newDef.isSensor = def.isSensor;
+    newDef.shape = reflectShape(def.shape);
+    return newDef;
+  }
+
+  /**
+   * Returns a fixture definition for a hitbox with the given shape.
+   */
+  private static FixtureDef createHitboxDef(Shape shape) {
+    FixtureDef def = new FixtureDef();
+    def.isSensor = true;
+    def.shape = shape;
+    return def;
+  }
+
+  /**
+   * Returns a fixture definition for a hurtbox with the given shape.
    */
-  public State(String path, boolean loop) {
+  private static FixtureDef createHurtboxDef(Shape shape) {
+    FixtureDef def = new FixtureDef();
+    def.density = 1f;
+    def.friction = 0f;
+    def.shape = shape;
+    return def;
+  }
+
+  /**
+   * Returns a fixture definition for a sensor with the given shape.
+   */
+  private static FixtureDef createSensorDef(Shape shape) {
+    FixtureDef def = new FixtureDef();
+    def.isSensor = true;
+    def.shape = shape;
+    return def;
+  }
+
+  /**
+   * Instantiates an entity state with no frames.
+   * @param loop whether to loop the animation
+   * @param atlasPath path to the texture atlas packed from the root directory
+   */
+  private State(boolean loop, String atlasPath) {
     this.loop = loop;
+    this.atlasPath = atlasPath;
     frames = new Array<Frame>();
-    Json json = new Json();
-    frameDataList = json.fromJson(Array.class, FrameData.class,
-                                  Gdx.files.internal(path + FRAME_FILE).readString());
-    for (FrameData frameData : frameDataList) {
-      Frame frame = new Frame();
-      frame.path = path + frameData.file;
-      frame.hitboxDefs = new Array<FixtureDef>();
-      frame.hurtboxDefs = new Array<FixtureDef>();
-      frame.sensorDefs = new ObjectMap<String, FixtureDef>();
+  }
+
+  /**
+   * Instantiates an entity state from its `frames.json` file.
+   * @param root path to the directory containing all states of the entity
+   * @param path path to the directory containing the state data, relative to the root
+   * @param loop whether to loop the animation
+   * @param atlasPath path to the texture atlas packed from the root directory
+   */
+  public State(String root, String path, boolean loop, String atlasPath) {
+    this(loop, atlasPath);
+    for (FrameData frameData : readFrameData(Gdx.files.internal(root + path + FRAME_FILE))) {
+      Frame frame = addFrame(root, path, frameData.file);
       for (Array<Float> arr : frameData.hitboxes) {
-        FixtureDef def = new FixtureDef();
-        def.isSensor = true;
-        def.shape = parseShape(arr);
-        frame.hitboxDefs.add(def);
+        frame.hitboxDefs.add(createHitboxDef(parseShape(arr)));
       }
       for (Array<Float> arr : frameData.hurtboxes) {
-        FixtureDef def = new FixtureDef();
-        def.density = 1f;
-        def.friction = 0f;
-        def.shape = parseShape(arr);
-        frame.hurtboxDefs.add(def);
+        frame.hurtboxDefs.add(createHurtboxDef(parseShape(arr)));
       }
       for (String name : frameData.sensors.keys()) {
-        FixtureDef def = new FixtureDef();
-        def.isSensor = true;
-        def.shape = parseShape(frameData.sensors.get(name));
-        frame.sensorDefs.put(name, def);
+        frame.sensorDefs.put(name, createSensorDef(parseShape(frameData.sensors.get(name))));
+      }
+      mirrorFrame(frame);
+    }
+  }
+
+  /**
+   * Reads the frames of this state from a compiled state file. Each frame is
+   * stored as its file name, the hitbox, hurtbox and sensor counts, the sensor
+   * names, the parameter count of each shape, and one flat array holding the
+   * parameters of every shape in that order.
+   * @param root path to the directory containing all states of the entity
+   * @param path path to the directory containing the state data, relative to the root
+   * @param buffer contents of the compiled state file, positioned at the frames
+   */
+  private void readCompiledFrames(String root, String path, ByteBuffer buffer) {
+    int frameCount = buffer.getShort();
+    String[] names = new String[0];
+    byte[] counts = new byte[0];
+    float[] params = new float[0];
+    for (int i = 0; i < frameCount; i++) {
+      Frame frame = addFrame(root, path, readString(buffer));
+      int hitboxCount = buffer.getShort();
+      int hurtboxCount = buffer.getShort();
+      int sensorCount = buffer.getShort();
+      if (names.length < sensorCount) {
+        names = new String[sensorCount];
+      }
+      for (int j = 0; j < sensorCount; j++) {
+        names[j] = readString(buffer);
+      }
+      int shapeCount = hitboxCount + hurtboxCount + sensorCount;
+      if (counts.length < shapeCount) {
+        counts = new byte[shapeCount];
+      }
+      buffer.get(counts, 0, shapeCount);
+      int paramCount = buffer.getShort();
+      if (params.length < paramCount) {
+        params = new float[paramCount];
+      }
+      buffer.asFloatBuffer().get(params, 0, paramCount);
+      buffer.position(buffer.position() + paramCount * 4);
+
+      int offset = 0;
+      for (int j = 0; j < shapeCount; j++) {
+        Shape shape = parseShape(params, offset, counts[j]);
+        offset += counts[j];
+        if (j < hitboxCount) {
+          frame.hitboxDefs.add(createHitboxDef(shape));
+        } else if (j < hitboxCount + hurtboxCount) {
+          frame.hurtboxDefs.add(createHurtboxDef(shape));
+        } else {
+          frame.sensorDefs.put(names[j - hitboxCount - hurtboxCount], createSensorDef(shape));
+        }
+      }
+      mirrorFrame(frame);
+    }
+  }
+
+  /**
+   * Switches this state to the atlas packed from the top-level directory of
+   * its path, if the entity was packed per directory. Region names in such an
+   * atlas are relative to that directory.
+   * @param root path to the directory containing all states of the entity
+   * @param path path to the directory containing the state data, relative to the root
+   */
+  private void findSplitAtlas(String root, String path) {
+    int split = path.indexOf('/');
+    String splitPath = ATLAS_DIR + root + path.substring(0, split) + ".atlas";
+    if (Gdx.files.internal(splitPath).exists()) {
+      atlasPath = splitPath;
+      for (Frame frame : frames) {
+        frame.name = frame.name.substring(split + 1);
       }
-      frames.add(frame);
     }
   }
 
   /**
-   * Preloads the textures for this state.
+   * Adds an empty frame showing the given image file to this state.
+   * @param root path to the directory containing all states of the entity
+   * @param path path to the directory containing the state data, relative to the root
+   * @param file file name of the frame image
+   */
+  private Frame addFrame(String root, String path, String file) {
+    Frame frame = new Frame();
+    frame.path = root + path + file;
+    frame.name = path + file.substring(0, file.lastIndexOf('.'));
+    frame.hitboxDefs = new Array<FixtureDef>();
+    frame.hurtboxDefs = new Array<FixtureDef>();
+    frame.sensorDefs = new ObjectMap<String, FixtureDef>();
+    frames.add(frame);
+    return frame;
+  }
+
+  /**
+   * Creates the mirrored fixture definitions of the given frame.
+   */
+  private static void mirrorFrame(Frame frame) {
+    frame.mirroredHitboxDefs = new Array<FixtureDef>();
+    frame.mirroredHurtboxDefs = new Array<FixtureDef>();
+    frame.mirroredSensorDefs = new ObjectMap<String, FixtureDef>();
+    for (FixtureDef def : frame.hitboxDefs) {
+      frame.mirroredHitboxDefs.add(mirrorDef(def));
+    }
+    for (FixtureDef def : frame.hurtboxDefs) {
+      frame.mirroredHurtboxDefs.add(mirrorDef(def));
+    }
+    for (String name : frame.sensorDefs.keys()) {
+      frame.mirroredSensorDefs.put(name, mirrorDef(frame.sensorDefs.get(name)));
+    }
+  }
+
+  /**
+   * Adds a holder of this state's textures, queueing them for the first holder.
+   * @param manager asset manager to use
+   * @return whether the textures were queued and must be pulled with loadContent
+   */
+  public boolean acquire(AssetManager manager) {
+    if (refs++ > 0) {
+      return false;
+    }
+    preloadContent(manager);
+    return true;
+  }
+
+  /**
+   * Removes a holder of this state's textures, unloading them once no holders remain.
+   * @param manager asset manager to use
+   */
+  public void release(AssetManager manager) {
+    if (refs > 0 && --refs == 0) {
+      unloadContent(manager);
+    }
+  }
+
+  /**
+   * Preloads the textures for this state. Uses the packed atlas if present,
+   * and falls back to the individual frame images otherwise.
    * @param manager asset manager to use
    */
   public void preloadContent(AssetManager manager) {
-    for (Frame frame : frames) {
-      manager.load(frame.path, Texture.class);
+    if (Gdx.files.internal(atlasPath).exists()) {
+      manager.load(atlasPath, TextureAtlas.class);
+    } else {
+      for (Frame frame : frames) {
+        TexturePipeline.getInstance().load(frame.path);
+      }
     }
   }
 
   /**
-   * Loads the textures for this state.
+   * Pulls the textures for this state from the asset manager, waiting for
+   * its atlas if still queued.
    * @param manager asset manager to use
    */
   public void loadContent(AssetManager manager) {
-    for (Frame frame : frames) {
-      frame.texture = manager.get(frame.path, Texture.class);
-      frame.texture.setFilter(Texture.TextureFilter.Linear, Texture.TextureFilter.Linear);
+    if (manager.contains(atlasPath)) {
+      manager.finishLoadingAsset(atlasPath);
+      TextureAtlas atlas = manager.get(atlasPath, TextureAtlas.class);
+      for (Frame frame : frames) {
+        frame.region = atlas.findRegion(frame.name);
+        if (frame.region == null) {
+          Gdx.app.error("State", "Missing region " + frame.name + " in " + atlasPath,
+                        new RuntimeException());
+        }
+      }
+    } else {
+      for (Frame frame : frames) {
+        Texture texture = manager.get(frame.path, Texture.class);
+        texture.setFilter(Texture.TextureFilter.Linear, Texture.TextureFilter.Linear);
+        frame.region = new TextureRegion(texture);
+      }
     }
   }
 
@@ -163,11 +490,16 @@ public class State {
    * @param manager asset manager to use
    */
   public void unloadContent(AssetManager manager) {
-    for (Frame frame : frames) {
-      if (manager.isLoaded(frame.path)) {
-        manager.unload(frame.path);
+    if (manager.contains(atlasPath)) {
+      manager.unload(atlasPath);
+    } else {
+      for (Frame frame : frames) {
+        TexturePipeline.getInstance().unload(frame.path);
       }
     }
+    for (Frame frame : frames) {
+      frame.region = null;
+    }
   }
 
   /**
@@ -175,7 +507,15 @@ public class State {
    * If looping, takes index mod length; otherwise returns last frame on overflow.
    */
   protected Frame getFrame(int index) {
-    return frames.get(loop ? index % frames.size : Math.min(index, frames.size - 1));
+    return frames.get(getFrameIndex(index));
+  }
+
+  /**
+   * Returns the index of the frame shown at the given animation count.
+   * If looping, takes index mod length; otherwise returns last frame on overflow.
+   */
+  public int getFrameIndex(int index) {
+    return loop ? index % frames.size : Math.min(index, frames.size - 1);
   }
   
   /**
@@ -193,30 +533,39 @@ public class State {
   }
 
   /**
-   * Returns the current texture of this state.
+   * Returns the current texture region of this state.
    */
-  public Texture getTexture(int index) {
-    return getFrame(index).texture;
+  public TextureRegion getRegion(int index) {
+    return getFrame(index).region;
   }
 
   /**
    * Returns the current hitbox fixture definition array of this state.
+   * @param index animation count
+   * @param dir facing direction (1 for right, -1 for left)
    */
-  public Array<FixtureDef> getHitboxDefs(int index) {
-    return getFrame(index).hitboxDefs;
+  public Array<FixtureDef> getHitboxDefs(int index, int dir) {
+    Frame frame = getFrame(index);
+    return dir < 0 ? frame.mirroredHitboxDefs : frame.hitboxDefs;
   }
 
   /**
    * Returns the current hurtbox fixture definition array of this state.
+   * @param index animation count
+   * @param dir facing direction (1 for right, -1 for left)
    */
-  public Array<FixtureDef> getHurtboxDefs(int index) {
-    return getFrame(index).hurtboxDefs;
+  public Array<FixtureDef> getHurtboxDefs(int index, int dir) {
+    Frame frame = getFrame(index);
+    return dir < 0 ? frame.mirroredHurtboxDefs : frame.hurtboxDefs;
   }
 
   /**
    * Returns the current sensor fixture definition array of this state.
+   * @param index animation count
+   * @param dir facing direction (1 for right, -1 for left)
    */
-  public ObjectMap<String, FixtureDef> getSensorDefs(int index) {
-    return getFrame(index).sensorDefs;
+  public ObjectMap<String, FixtureDef> getSensorDefs(int index, int dir) {
+    Frame frame = getFrame(index);
+    return dir < 0 ? frame.mirroredSensorDefs : frame.sensorDefs;
   }
 }
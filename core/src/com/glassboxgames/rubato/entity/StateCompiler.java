@@ -0,0 +1,91 @@
+package com.glassboxgames.rubato.entity;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import com.badlogic.gdx.files.*;
+import com.badlogic.gdx.utils.*;
+
+/**
+ * Build-time tool that compiles the `states.json` and `frames.json` files of
+ * each entity into a single binary state file read by State.readStates.
+ * Runs without a libGDX application, from the assets directory.
+ */
+public class StateCompiler {
+  /**
+   * Compiles the state tree of each given entity directory.
+   * @param args entity directories relative to the working directory, without trailing slash
+   */
+  public static void main(String[] args) throws IOException {
+    File outputDir = new File(State.COMPILED_DIR);
+    for (String root : args) {
+      File output = new File(outputDir, root + State.COMPILED_EXT);
+      output.getParentFile().mkdirs();
+      DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(output)));
+      try {
+        compile(root + "/", out);
+      } finally {
+        out.close();
+      }
+      System.out.println("Compiled " + root + " to " + output.getPath());
+    }
+  }
+
+  /**
+   * Writes the compiled state file of the entity at the given root path.
+   * @param root path to the directory containing all states of the entity
+   * @param out stream to write to
+   */
+  private static void compile(String root, DataOutputStream out) throws IOException {
+    Array<State.StateMetadata> metadataList = State.readMetadata(new FileHandle(root + State.STATE_FILE));
+    out.writeInt(State.COMPILED_MAGIC);
+    out.writeInt(State.COMPILED_VERSION);
+    out.writeShort(metadataList.size);
+    for (State.StateMetadata metadata : metadataList) {
+      writeString(out, metadata.path);
+      out.writeByte(metadata.loop ? 1 : 0);
+      Array<State.FrameData> frameDataList =
+        State.readFrameData(new FileHandle(root + metadata.path + State.FRAME_FILE));
+      out.writeShort(frameDataList.size);
+      for (State.FrameData frameData : frameDataList) {
+        writeFrame(out, frameData);
+      }
+    }
+  }
+
+  /**
+   * Writes one frame in the layout read by State.readCompiledFrames.
+   */
+  private static void writeFrame(DataOutputStream out, State.FrameData frameData) throws IOException {
+    Array<Array<Float>> shapes = new Array<Array<Float>>();
+    shapes.addAll(frameData.hitboxes);
+    shapes.addAll(frameData.hurtboxes);
+    writeString(out, frameData.file);
+    out.writeShort(frameData.hitboxes.size);
+    out.writeShort(frameData.hurtboxes.size);
+    out.writeShort(frameData.sensors.size);
+    for (ObjectMap.Entry<String, Array<Float>> entry : frameData.sensors.entries()) {
+      writeString(out, entry.key);
+      shapes.add(entry.value);
+    }
+    int paramCount = 0;
+    for (Array<Float> shape : shapes) {
+      out.writeByte(shape.size);
+      paramCount += shape.size;
+    }
+    out.writeShort(paramCount);
+    for (Array<Float> shape : shapes) {
+      for (Float param : shape) {
+        out.writeFloat(param);
+      }
+    }
+  }
+
+  /**
+   * Writes a string as a length-prefixed UTF-8 byte sequence.
+   */
+  private static void writeString(DataOutputStream out, String value) throws IOException {
+    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    out.writeShort(bytes.length);
+    out.write(bytes);
+  }
+}
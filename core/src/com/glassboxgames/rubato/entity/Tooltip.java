@@ -1,7 +1,7 @@
 package com.glassboxgames.rubato.entity;
 
 import com.badlogic.gdx.graphics.Color;
-import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.g2d.TextureRegion;
 import com.badlogic.gdx.math.*;
 import com.badlogic.gdx.physics.box2d.*;
 import com.badlogic.gdx.utils.*;
@@ -47,6 +47,7 @@ public class Tooltip extends Entity {
    */
   public Tooltip(float x, float y, int type, String action) {
     super(x, y, type);
+    kind = KIND_TOOLTIP;
     bodyDef.type = BodyDef.BodyType.StaticBody;
     drawPercent = 0;
     rate = 0;
@@ -94,11 +95,11 @@ public class Tooltip extends Entity {
 
   @Override
   public void draw(GameCanvas canvas) {
-    Texture texture = getTexture();
-    float w = texture.getWidth() * drawPercent / DRAW_TIME;
-    float h = texture.getHeight() * drawPercent / DRAW_TIME;
-    Vector2 pos = getPosition().scl(Shared.PPM);
-    canvas.draw(texture, Color.WHITE,
+    TextureRegion region = getRegion();
+    float w = region.getRegionWidth() * drawPercent / DRAW_TIME;
+    float h = region.getRegionHeight() * drawPercent / DRAW_TIME;
+    Vector2 pos = getDrawPosition().scl(Shared.PPM);
+    canvas.draw(region, Color.WHITE,
       dir * w / 2, h / 2,
       pos.x, pos.y,
       dir * w, h);
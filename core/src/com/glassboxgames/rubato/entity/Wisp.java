@@ -5,6 +5,7 @@ import com.badlogic.gdx.math.Vector2;
 import com.badlogic.gdx.physics.box2d.BodyDef;
 import com.badlogic.gdx.physics.box2d.CircleShape;
 import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.ObjectSet;
 import com.glassboxgames.rubato.GameCanvas;
 
 public class Wisp extends Enemy {
@@ -59,6 +60,12 @@ public class Wisp extends Enemy {
     return states;
   }
 
+  @Override
+  public void addUsedStates(ObjectSet<State> used) {
+    super.addUsedStates(used);
+    used.addAll(Projectile.states);
+  }
+
   @Override
   public void enterState() {
     super.enterState();
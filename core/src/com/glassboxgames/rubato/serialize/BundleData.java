@@ -0,0 +1,13 @@
+package com.glassboxgames.rubato.serialize;
+
+import com.badlogic.gdx.utils.*;
+
+/**
+ * Simple asset bundle serialization class.
+ */
+public class BundleData {
+  /** Group of the bundle; loading a bundle unloads the others in its group */
+  public String group;
+  /** Array of shortnames of the textures in this bundle */
+  public Array<String> textures;
+}
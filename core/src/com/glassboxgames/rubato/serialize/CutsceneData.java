@@ -0,0 +1,16 @@
+package com.glassboxgames.rubato.serialize;
+
+/**
+ * Simple cutscene strip index serialization class, written at build time
+ * when a cutscene is sliced into horizontal strips.
+ */
+public class CutsceneData {
+  /** Width of the cutscene in pixels */
+  public int width;
+  /** Height of the cutscene in pixels */
+  public int height;
+  /** Distance in pixels between the tops of consecutive strips */
+  public int stripHeight;
+  /** Number of strips from the top; each but the last overlaps the next by one row */
+  public int strips;
+}
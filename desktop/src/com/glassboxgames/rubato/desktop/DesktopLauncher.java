@@ -3,6 +3,8 @@ package com.glassboxgames.rubato.desktop;
 import com.badlogic.gdx.backends.lwjgl.LwjglApplication;
 import com.badlogic.gdx.backends.lwjgl.LwjglApplicationConfiguration;
 import com.glassboxgames.rubato.GDXRoot;
+import com.glassboxgames.rubato.InputController;
+import com.glassboxgames.rubato.TexturePipeline;
 
 public class DesktopLauncher {
 	public static void main(String[] arg) {
@@ -15,6 +17,16 @@ public class DesktopLauncher {
     config.x = -1;
     config.y = -1;
     config.resizable = false;
-		new LwjglApplication(new GDXRoot(), config);
+    GDXRoot root = new GDXRoot();
+    for (int i = 0; i < arg.length; i++) {
+      if (arg[i].equals("--record")) {
+        InputController.getInstance().setRecordLevels(true);
+      } else if (arg[i].equals("--replay") && i + 1 < arg.length) {
+        root.setReplay(arg[++i]);
+      } else if (arg[i].equals("--upload-budget") && i + 1 < arg.length) {
+        TexturePipeline.getInstance().setUploadBudget(Integer.parseInt(arg[++i]));
+      }
+    }
+		new LwjglApplication(root, config);
 	}
 }
@@ -0,0 +1,133 @@
+package com.glassboxgames.rubato.headless;
+
+import java.lang.management.ManagementFactory;
+import com.badlogic.gdx.*;
+import com.badlogic.gdx.math.*;
+import com.badlogic.gdx.physics.box2d.*;
+import com.glassboxgames.rubato.*;
+import com.glassboxgames.rubato.serialize.*;
+
+/**
+ * Application that runs every shipped level with scripted input and measures
+ * the heap allocated by the simulation thread in the steady-state play loop.
+ * Exits with a nonzero status if any level allocates more than the budget.
+ */
+public class AllocationCheck extends ApplicationAdapter {
+  /** Default number of ticks to measure per level */
+  public static final int DEFAULT_TICKS = 3600;
+  /**
+   * Default allocation budget, in average bytes per measured tick. Only
+   * gameplay events such as projectile spawns are expected to allocate.
+   */
+  public static final long DEFAULT_BUDGET = 128;
+  /** Number of ticks to simulate per level before measuring */
+  private static final int WARMUP_TICKS = 600;
+
+  /** Number of ticks to measure per level */
+  private int ticks;
+  /** Allocation budget in average bytes per tick */
+  private long budget;
+  /** Thread bean used to read the allocated byte count */
+  private com.sun.management.ThreadMXBean threads;
+  /** Id of the simulation thread */
+  private long threadId;
+
+  /**
+   * Instantiates the allocation check.
+   * @param ticks number of ticks to measure per level
+   * @param budget allocation budget in average bytes per tick
+   */
+  public AllocationCheck(int ticks, long budget) {
+    this.ticks = ticks;
+    this.budget = budget;
+  }
+
+  @Override
+  public void create() {
+    Gdx.gl = Gdx.gl20 = NullGL20.create();
+    Box2D.init();
+    GameMode.initStates();
+    GameMode.initParticles();
+    threads = (com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+    threadId = Thread.currentThread().getId();
+    if (!threads.isThreadAllocatedMemorySupported()) {
+      Gdx.app.error("AllocationCheck", "Thread allocation measurement is not supported by this JVM");
+      System.exit(1);
+    }
+    threads.setThreadAllocatedMemoryEnabled(true);
+
+    boolean passed = true;
+    LevelCatalog catalog = LevelCatalog.getInstance();
+    for (int i = 0; i < catalog.getChapterCount(); i++) {
+      for (int j = 0; j < catalog.getLevelCount(i); j++) {
+        long allocated = measure(catalog.get(i, j));
+        boolean ok = allocated <= budget * ticks;
+        passed &= ok;
+        Gdx.app.log("AllocationCheck",
+                    String.format("%s %d: %d bytes over %d ticks (%.1f bytes/tick) %s",
+                                  Shared.CHAPTER_NAMES.get(i), j + 1, allocated, ticks,
+                                  (float)allocated / ticks, ok ? "ok" : "OVER BUDGET"));
+      }
+    }
+    if (!passed) {
+      Gdx.app.error("AllocationCheck", "Allocation exceeded the budget of " + budget + " bytes per tick");
+      System.exit(1);
+    }
+    Gdx.app.exit();
+  }
+
+  /**
+   * Returns an input script that runs right, jumping and attacking periodically.
+   */
+  private static InputRecording createScript(int length) {
+    InputRecording script = new InputRecording(0, 0);
+    for (int t = 0; t < length; t++) {
+      int state = InputRecording.RIGHT_HELD;
+      if (t % 40 == 0) {
+        state |= InputRecording.JUMP_PRESSED;
+      }
+      if (t % 40 < 10) {
+        state |= InputRecording.JUMP_HELD;
+      }
+      if (t % 25 == 0) {
+        state |= InputRecording.ATTACK_PRESSED | InputRecording.ATTACK_HELD;
+      }
+      script.add(state, 0);
+    }
+    return script;
+  }
+
+  /**
+   * Simulates the given level with scripted input through the same simulation
+   * as GameMode, and returns the bytes allocated during the measured ticks.
+   * The level restarts whenever it exits, and ticks in which it restarts are
+   * not measured, since the new level's colliders are created within them.
+   */
+  private long measure(LevelData data) {
+    World world = new World(new Vector2(0, GameMode.GRAVITY), false);
+    world.setContactListener(CollisionController.getInstance());
+    Simulation simulation = SimulationBenchmark.createSimulation(world, data);
+    InputController input = InputController.getInstance();
+    input.startReplay(createScript(WARMUP_TICKS + ticks), false);
+    float step = 1 / GameMode.DEFAULT_TICK_RATE;
+    long allocated = 0;
+    for (int i = 0; i < WARMUP_TICKS + ticks; i++) {
+      long before = threads.getThreadAllocatedBytes(threadId);
+      input.readInput();
+      boolean reset = simulation.tick(step) != Simulation.CONTINUE;
+      if (reset) {
+        simulation.getLevel().deactivatePhysics(world);
+        simulation = SimulationBenchmark.createSimulation(world, data);
+      }
+      long after = threads.getThreadAllocatedBytes(threadId);
+      if (i >= WARMUP_TICKS && !reset) {
+        allocated += after - before;
+      }
+    }
+    input.stopReplay();
+    simulation.getLevel().deactivatePhysics(world);
+    CollisionController.getInstance().clearEvents();
+    world.dispose();
+    return allocated;
+  }
+}
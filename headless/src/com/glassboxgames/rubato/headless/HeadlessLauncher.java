@@ -0,0 +1,36 @@
+package com.glassboxgames.rubato.headless;
+
+import com.badlogic.gdx.backends.headless.HeadlessApplication;
+import com.badlogic.gdx.backends.headless.HeadlessApplicationConfiguration;
+
+/**
+ * Entry point for running level simulations without a display.
+ * Takes an optional number of ticks to simulate per level, or
+ * "--replay" and the path of an input recording to replay, or
+ * "--alloc" to check the play loop against an allocation budget.
+ */
+public class HeadlessLauncher {
+  public static void main(String[] arg) {
+    int ticks = 0;
+    String replayPath = null;
+    boolean alloc = false;
+    for (int i = 0; i < arg.length; i++) {
+      if (arg[i].equals("--replay") && i + 1 < arg.length) {
+        replayPath = arg[++i];
+      } else if (arg[i].equals("--alloc")) {
+        alloc = true;
+      } else {
+        ticks = Integer.parseInt(arg[i]);
+      }
+    }
+    HeadlessApplicationConfiguration config = new HeadlessApplicationConfiguration();
+    config.renderInterval = 0;
+    if (alloc) {
+      ticks = ticks > 0 ? ticks : AllocationCheck.DEFAULT_TICKS;
+      new HeadlessApplication(new AllocationCheck(ticks, AllocationCheck.DEFAULT_BUDGET), config);
+    } else {
+      ticks = ticks > 0 ? ticks : SimulationBenchmark.DEFAULT_TICKS;
+      new HeadlessApplication(new SimulationBenchmark(ticks, replayPath), config);
+    }
+  }
+}
@@ -0,0 +1,40 @@
+package com.glassboxgames.rubato.headless;
+
+import java.lang.reflect.*;
+import com.badlogic.gdx.graphics.GL20;
+
+/**
+ * Factory for a GL20 implementation that ignores every call.
+ * Lets textures (e.g. particle effect images) be created without a GPU.
+ */
+public final class NullGL20 {
+  /**
+   * Should not be instantiated.
+   */
+  private NullGL20() {}
+
+  /**
+   * Returns a GL20 whose methods do nothing and return zero values.
+   */
+  public static GL20 create() {
+    return (GL20)Proxy.newProxyInstance(GL20.class.getClassLoader(), new Class<?>[] { GL20.class },
+                                        new InvocationHandler() {
+      @Override
+      public Object invoke(Object proxy, Method method, Object[] args) {
+        Class<?> type = method.getReturnType();
+        if (type == boolean.class) {
+          return false;
+        } else if (type == int.class) {
+          return 0;
+        } else if (type == float.class) {
+          return 0f;
+        } else if (type == long.class) {
+          return 0L;
+        } else if (type == String.class) {
+          return "";
+        }
+        return null;
+      }
+    });
+  }
+}
@@ -0,0 +1,141 @@
+package com.glassboxgames.rubato.headless;
+
+import com.badlogic.gdx.*;
+import com.badlogic.gdx.math.*;
+import com.badlogic.gdx.physics.box2d.*;
+import com.badlogic.gdx.utils.*;
+import com.glassboxgames.rubato.*;
+import com.glassboxgames.rubato.entity.*;
+import com.glassboxgames.rubato.serialize.*;
+
+/**
+ * Application that simulates every shipped level without rendering and
+ * reports simulation throughput per level. Given an input recording, it
+ * instead replays the recorded level and reports throughput and desyncs.
+ */
+public class SimulationBenchmark extends ApplicationAdapter {
+  /** Default number of ticks to simulate per level */
+  public static final int DEFAULT_TICKS = 3600;
+  /** Number of ticks to simulate per level before measuring */
+  private static final int WARMUP_TICKS = 600;
+
+  /** Number of ticks to measure per level */
+  private int ticks;
+  /** Path of the input recording to replay, or null */
+  private String replayPath;
+  /** Total number of Box2D contacts after each simulated tick */
+  private long contacts;
+  /** Number of Box2D bodies after the last simulated tick */
+  private int bodies;
+
+  /**
+   * Instantiates the benchmark.
+   * @param ticks number of ticks to measure per level
+   * @param replayPath path of an input recording to replay, or null to run every level
+   */
+  public SimulationBenchmark(int ticks, String replayPath) {
+    this.ticks = ticks;
+    this.replayPath = replayPath;
+  }
+
+  @Override
+  public void create() {
+    Gdx.gl = Gdx.gl20 = NullGL20.create();
+    Box2D.init();
+    GameMode.initStates();
+    GameMode.initParticles();
+
+    if (replayPath != null) {
+      replay(InputRecording.read(Gdx.files.absolute(replayPath)));
+      Gdx.app.exit();
+      return;
+    }
+
+    LevelCatalog catalog = LevelCatalog.getInstance();
+    for (int i = 0; i < catalog.getChapterCount(); i++) {
+      for (int j = 0; j < catalog.getLevelCount(i); j++) {
+        LevelData data = catalog.get(i, j);
+        simulate(data, WARMUP_TICKS);
+        Entity.resetFixtureCounts();
+        contacts = 0;
+        long start = TimeUtils.nanoTime();
+        int resets = simulate(data, ticks);
+        long elapsed = TimeUtils.timeSinceNanos(start);
+        Gdx.app.log("SimulationBenchmark",
+                    String.format("%s %d: %d ticks, %.1f ticks/s, %.3f ms/tick, %d resets, "
+                                  + "%.1f/%.1f fixtures created/destroyed per tick, "
+                                  + "%.1f contacts per tick, %d bodies",
+                                  Shared.CHAPTER_NAMES.get(i), j + 1, ticks,
+                                  ticks * 1e9 / elapsed, elapsed / 1e6 / ticks, resets,
+                                  (float)Entity.getFixturesCreated() / ticks,
+                                  (float)Entity.getFixturesDestroyed() / ticks,
+                                  (float)contacts / ticks, bodies));
+      }
+    }
+    Gdx.app.exit();
+  }
+
+  /**
+   * Replays the given recording on its level and reports throughput and sync.
+   */
+  private void replay(InputRecording recording) {
+    LevelData data = LevelCatalog.getInstance().get(recording.getChapter(), recording.getLevel());
+    InputController input = InputController.getInstance();
+    input.startReplay(recording);
+    simulate(data, recording.getLength());
+    input.startReplay(recording);
+    long start = TimeUtils.nanoTime();
+    simulate(data, recording.getLength());
+    long elapsed = TimeUtils.timeSinceNanos(start);
+    int ticks = recording.getLength();
+    int desync = input.getDesyncTick();
+    input.stopReplay();
+    Gdx.app.log("SimulationBenchmark",
+                String.format("replay %s %d: %d ticks, %.1f ticks/s, %.3f ms/tick, %s",
+                              Shared.CHAPTER_NAMES.get(recording.getChapter()), recording.getLevel() + 1,
+                              ticks, ticks * 1e9 / elapsed, elapsed / 1e6 / ticks,
+                              desync == -1 ? "in sync" : "desynced at tick " + desync));
+  }
+
+  /**
+   * Simulates the given level for the given number of ticks through the same
+   * simulation as GameMode. The level restarts whenever it exits, either
+   * because the player died or because the level was completed. Gameplay
+   * input comes from the input controller, so an active replay drives the player.
+   * @param data the level to simulate
+   * @param ticks number of ticks to simulate
+   * @return number of times the level was restarted
+   */
+  private int simulate(LevelData data, int ticks) {
+    World world = new World(new Vector2(0, GameMode.GRAVITY), false);
+    world.setContactListener(CollisionController.getInstance());
+    Simulation simulation = createSimulation(world, data);
+    InputController input = InputController.getInstance();
+    float step = 1 / GameMode.DEFAULT_TICK_RATE;
+    int resets = 0;
+    for (int i = 0; i < ticks; i++) {
+      input.readInput();
+      int code = simulation.tick(step);
+      contacts += world.getContactCount();
+      if (code != Simulation.CONTINUE) {
+        simulation.getLevel().deactivatePhysics(world);
+        simulation = createSimulation(world, data);
+        resets++;
+      }
+    }
+    bodies = world.getBodyCount();
+    simulation.getLevel().deactivatePhysics(world);
+    CollisionController.getInstance().clearEvents();
+    world.dispose();
+    return resets;
+  }
+
+  /**
+   * Creates the given level in the given world and returns its simulation.
+   */
+  static Simulation createSimulation(World world, LevelData data) {
+    LevelContainer level = new LevelContainer(data);
+    level.activatePhysics(world);
+    return new Simulation(world, level, false);
+  }
+}